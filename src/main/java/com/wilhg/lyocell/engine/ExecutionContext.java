@@ -2,15 +2,39 @@ package com.wilhg.lyocell.engine;
 
 import java.util.concurrent.atomic.AtomicBoolean;
 
-public record ExecutionContext(int vuId, int iteration, AtomicBoolean failed) {
+import com.wilhg.lyocell.metrics.MetricsBuffer;
+
+/**
+ * Per-iteration state bound to the VU thread.
+ *
+ * @param scheduleLagNanos For open-model iterations, how long the iteration started after its
+ *                         scheduled arrival time; {@link #UNSCHEDULED} for closed-model iterations.
+ * @param scenario         The scenario running the iteration; tags per-scenario metrics.
+ * @param metrics          The VU's local metrics buffer, or {@code null} to record straight into the collector.
+ */
+public record ExecutionContext(int vuId, int iteration, AtomicBoolean failed, long scheduleLagNanos, String scenario, MetricsBuffer metrics) {
     public static final ScopedValue<ExecutionContext> CURRENT = ScopedValue.newInstance();
+    public static final long UNSCHEDULED = -1;
+    public static final String DEFAULT_SCENARIO = "default";
 
     public ExecutionContext(int vuId) {
-        this(vuId, 0, new AtomicBoolean(false));
+        this(vuId, 0);
     }
 
     public ExecutionContext(int vuId, int iteration) {
-        this(vuId, iteration, new AtomicBoolean(false));
+        this(vuId, iteration, DEFAULT_SCENARIO, null);
+    }
+
+    public ExecutionContext(int vuId, int iteration, long scheduleLagNanos) {
+        this(vuId, iteration, scheduleLagNanos, DEFAULT_SCENARIO, null);
+    }
+
+    public ExecutionContext(int vuId, int iteration, String scenario, MetricsBuffer metrics) {
+        this(vuId, iteration, new AtomicBoolean(false), UNSCHEDULED, scenario, metrics);
+    }
+
+    public ExecutionContext(int vuId, int iteration, long scheduleLagNanos, String scenario, MetricsBuffer metrics) {
+        this(vuId, iteration, new AtomicBoolean(false), Math.max(0, scheduleLagNanos), scenario, metrics);
     }
 
     public static ExecutionContext get() {
@@ -24,4 +48,18 @@ public record ExecutionContext(int vuId, int iteration, AtomicBoolean failed) {
     public boolean isFailed() {
         return failed.get();
     }
+
+    /**
+     * Whether this iteration was started from an arrival-rate schedule.
+     */
+    public boolean isScheduled() {
+        return scheduleLagNanos != UNSCHEDULED;
+    }
+
+    /**
+     * Queueing delay between the scheduled and the actual start of the iteration, in milliseconds.
+     */
+    public double scheduleLagMillis() {
+        return isScheduled() ? scheduleLagNanos / 1_000_000.0 : 0;
+    }
 }
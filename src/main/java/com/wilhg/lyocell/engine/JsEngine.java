@@ -2,17 +2,26 @@ package com.wilhg.lyocell.engine;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
 
 import org.graalvm.polyglot.Context;
 import org.graalvm.polyglot.HostAccess;
 import org.graalvm.polyglot.Source;
 import org.graalvm.polyglot.Value;
 import org.graalvm.polyglot.io.IOAccess;
+import org.graalvm.polyglot.proxy.ProxyExecutable;
 
 import com.wilhg.lyocell.js.LyocellFileSystem;
 import com.wilhg.lyocell.metrics.MetricsCollector;
@@ -23,10 +32,19 @@ import com.wilhg.lyocell.modules.ModuleRegistry;
 public class JsEngine implements AutoCloseable {
     private final Context context;
     private final TestEngine testEngine;
+    private final SourceCache sourceCache;
     private final List<LyocellModule> installedModules;
     private final ReentrantLock lock = new ReentrantLock();
     private final BlockingQueue<Runnable> eventQueue = new LinkedBlockingQueue<>();
     private final ThreadLocal<Integer> enterDepth = ThreadLocal.withInitial(() -> 0);
+    // Async requests and timeouts that will still hand the event loop an event
+    private final AtomicInteger pendingOperations = new AtomicInteger();
+    private static final Runnable WAKE_UP = () -> {};
+    private static final long NO_DEADLINE = Long.MIN_VALUE;
+    private Value promiseConstructor;
+    // Thread that keeps the context entered between calls, see own()
+    private volatile Thread owner;
+    private static final int OWNED = 1_000_000;
 
     public JsEngine(MetricsCollector metricsCollector, TestEngine testEngine) {
         this(java.util.Collections.emptyMap(), metricsCollector, testEngine);
@@ -39,16 +57,19 @@ public class JsEngine implements AutoCloseable {
     public JsEngine(Map<String, Object> extraBindings, MetricsCollector metricsCollector, List<LyocellModule> modules, TestEngine testEngine) {
         this.testEngine = testEngine;
         this.installedModules = modules;
+        this.sourceCache = testEngine != null ? testEngine.getSourceCache() : new SourceCache();
         this.context = Context.newBuilder("js")
+                .engine(TestEngine.getSharedEngine())
                 .allowHostAccess(HostAccess.ALL)
                 .allowHostClassLookup(s -> true)
                 .allowIO(IOAccess.newBuilder()
-                        .fileSystem(new LyocellFileSystem(metricsCollector))
+                        .fileSystem(new LyocellFileSystem(metricsCollector, sourceCache))
                         .build())
                 .allowExperimentalOptions(true)
                 .allowCreateThread(true)
                 .option("js.esm-eval-returns-exports", "true")
-                .option("engine.WarnVirtualThreadSupport", "false")
+                // Shared host data (e.g. setup() results) gets Array/Object prototype methods
+                .option("js.foreign-object-prototype", "true")
                 .build();
 
         // Install modules
@@ -80,7 +101,33 @@ public class JsEngine implements AutoCloseable {
         }
     }
 
+    /**
+     * Enters the context for the calling thread until {@link #disown()}, so its calls skip the
+     * lock and the context switch. Other threads still get in through the locked path whenever
+     * the owner pauses, e.g. while it sleeps or waits for events.
+     */
+    public void own() {
+        Thread current = Thread.currentThread();
+        if (owner != current) {
+            enter();
+            owner = current;
+        }
+    }
+
+    /**
+     * Ends {@link #own()}; a no-op on other threads.
+     */
+    public void disown() {
+        if (owner == Thread.currentThread()) {
+            owner = null;
+            leave();
+        }
+    }
+
     public void enter() {
+        if (owner == Thread.currentThread()) {
+            return;
+        }
         lock.lock();
         try {
             context.enter();
@@ -92,6 +139,9 @@ public class JsEngine implements AutoCloseable {
     }
 
     public void leave() {
+        if (owner == Thread.currentThread()) {
+            return;
+        }
         int depth = enterDepth.get();
         if (depth > 0) {
             context.leave();
@@ -103,6 +153,10 @@ public class JsEngine implements AutoCloseable {
     }
 
     public int pause() {
+        boolean owned = owner == Thread.currentThread();
+        if (owned) {
+            owner = null;
+        }
         int depth = enterDepth.get();
         for (int i = 0; i < depth; i++) {
             context.leave();
@@ -113,10 +167,12 @@ public class JsEngine implements AutoCloseable {
         for (int i = 0; i < holdCount; i++) {
             lock.unlock();
         }
-        return depth * 1000 + holdCount;
+        return (owned ? OWNED : 0) + depth * 1000 + holdCount;
     }
 
     public void resume(int state) {
+        boolean owned = state >= OWNED;
+        state %= OWNED;
         int depth = state / 1000;
         int holdCount = state % 1000;
         for (int i = 0; i < holdCount; i++) {
@@ -126,52 +182,191 @@ public class JsEngine implements AutoCloseable {
             context.enter();
         }
         enterDepth.set(depth);
+        if (owned) {
+            owner = Thread.currentThread();
+        }
     }
 
     public void executeAsync(Runnable runnable) {
         eventQueue.add(runnable);
     }
 
+    /**
+     * Registers an operation that ends with {@link #completeOperation} or {@link #cancelOperation}.
+     * An iteration does not end while operations are pending.
+     */
+    public void beginOperation() {
+        pendingOperations.incrementAndGet();
+    }
+
+    /**
+     * Ends an operation by running {@code callback} on the VU thread.
+     */
+    public void completeOperation(Runnable callback) {
+        eventQueue.add(() -> {
+            pendingOperations.decrementAndGet();
+            callback.run();
+        });
+    }
+
+    /**
+     * Ends an operation that has nothing left to run, e.g. a cleared timeout.
+     */
+    public void cancelOperation() {
+        pendingOperations.decrementAndGet();
+        eventQueue.add(WAKE_UP);
+    }
+
+    /**
+     * Returns a Promise settled with the result of {@code task}, which runs on its own virtual
+     * thread. The Promise settles on the VU thread, from the event loop. Must be called from
+     * inside the context.
+     */
+    public Value promise(Callable<?> task) {
+        if (promiseConstructor == null) {
+            promiseConstructor = context.getBindings("js").getMember("Promise");
+        }
+        ExecutionContext executionContext = ExecutionContext.get();
+        return promiseConstructor.newInstance((ProxyExecutable) args -> {
+            Value resolve = args[0];
+            Value reject = args[1];
+            beginOperation();
+            Thread.ofVirtual().start(() -> {
+                Runnable settle;
+                try {
+                    Object result = executionContext != null
+                            ? ScopedValue.where(ExecutionContext.CURRENT, executionContext).call(task::call)
+                            : task.call();
+                    settle = () -> resolve.execute(result);
+                } catch (Throwable t) {
+                    String message = t.getMessage() != null ? t.getMessage() : t.toString();
+                    settle = () -> reject.execute(context.getBindings("js").getMember("Error").newInstance(message));
+                }
+                completeOperation(settle);
+            });
+            return null;
+        });
+    }
+
     public void processEvents() {
         Runnable runnable;
         while ((runnable = eventQueue.poll()) != null) {
-            enter();
-            try {
-                runnable.run();
-            } catch (Exception e) {
-                System.err.println("Async Task Error: " + e.getMessage());
-                e.printStackTrace();
-            } finally {
-                leave();
-            }
+            runEvent(runnable);
         }
     }
 
-    public void sleep(double seconds) {
-        long end = System.currentTimeMillis() + (long)(seconds * 1000);
-        while (System.currentTimeMillis() < end) {
-            int state = pause();
-            try {
-                processEvents();
-                Thread.sleep(10);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
-            } finally {
-                resume(state);
+    private void runEvent(Runnable runnable) {
+        if (runnable == WAKE_UP) {
+            return;
+        }
+        enter();
+        try {
+            runnable.run();
+        } catch (Exception e) {
+            System.err.println("Async Task Error: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            leave();
+        }
+    }
+
+    /**
+     * Runs events until no operation is pending. Promise reactions run as part of the event
+     * that settled the Promise.
+     */
+    private void runEventLoop() {
+        runEventsUntil(NO_DEADLINE, () -> pendingOperations.get() <= 0);
+    }
+
+    /**
+     * Runs events as they arrive until {@code done} holds or the deadline ({@link System#nanoTime()}
+     * based) passes. In between the VU is parked with the context released; an enqueue wakes
+     * it at once, so an idle VU costs no CPU and wakes on time. Buffered metrics that would
+     * outlive their flush interval while parked are flushed first.
+     */
+    private void runEventsUntil(long deadlineNanos, BooleanSupplier done) {
+        int state = pause();
+        try {
+            processEvents();
+            while (!done.getAsBoolean()) {
+                Runnable next;
+                if (deadlineNanos == NO_DEADLINE) {
+                    flushMetricsBeforeParking(Long.MAX_VALUE);
+                    next = eventQueue.take();
+                } else {
+                    long remaining = deadlineNanos - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    flushMetricsBeforeParking(System.currentTimeMillis() + TimeUnit.NANOSECONDS.toMillis(remaining));
+                    next = eventQueue.poll(remaining, TimeUnit.NANOSECONDS);
+                }
+                if (next != null) {
+                    runEvent(next);
+                }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            resume(state);
+        }
+    }
+
+    private static void flushMetricsBeforeParking(long untilMillis) {
+        ExecutionContext ctx = ExecutionContext.get();
+        if (ctx != null && ctx.metrics() != null) {
+            ctx.metrics().flushIfDueBy(untilMillis);
+        }
+    }
+
+    /**
+     * Runs the event loop for what {@code result} started and, if it is a Promise (an async
+     * function), fails like k6 when it was rejected.
+     */
+    private void settle(Value result) {
+        Value[] rejection = new Value[1];
+        if (result != null && result.hasMember("then") && result.getMember("then").canExecute()) {
+            result.invokeMember("then",
+                    (ProxyExecutable) _ -> null,
+                    (ProxyExecutable) args -> {
+                        rejection[0] = args.length > 0 ? args[0] : null;
+                        return null;
+                    });
+        }
+        runEventLoop();
+        if (rejection[0] != null) {
+            throw new RuntimeException("Uncaught (in promise) " + rejection[0]);
         }
     }
 
+    public void sleep(double seconds) {
+        runEventsUntil(System.nanoTime() + (long) (seconds * 1_000_000_000L), () -> false);
+    }
+
+    /**
+     * Blocks until {@code future} completes or {@code timeout} passes, running events meanwhile.
+     */
+    public void await(CompletableFuture<?> future, Duration timeout) {
+        future.whenComplete((_, _) -> eventQueue.add(WAKE_UP));
+        runEventsUntil(System.nanoTime() + timeout.toNanos(), future::isDone);
+    }
+
     private Value moduleExports;
+    // Exports resolved once; only read with the context entered
+    private final Map<String, Optional<Value>> exports = new HashMap<>();
+
+    private Value export(String name) {
+        return exports.computeIfAbsent(name, n -> moduleExports != null && moduleExports.hasMember(n)
+                ? Optional.of(moduleExports.getMember(n))
+                : Optional.empty()).orElse(null);
+    }
 
     public void runScript(Path scriptPath) throws IOException {
-        Source source = Source.newBuilder("js", scriptPath.toFile())
-                .mimeType("application/javascript+module")
-                .build();
+        Source source = sourceCache.getScript(scriptPath);
         enter();
         try {
             this.moduleExports = context.eval(source);
+            exports.clear();
         } finally {
             leave();
         }
@@ -180,10 +375,7 @@ public class JsEngine implements AutoCloseable {
     public Value getOptions() {
         enter();
         try {
-            if (moduleExports != null && moduleExports.hasMember("options")) {
-                return moduleExports.getMember("options");
-            }
-            return null;
+            return export("options");
         } finally {
             leave();
         }
@@ -192,7 +384,7 @@ public class JsEngine implements AutoCloseable {
     public boolean hasExport(String name) {
         enter();
         try {
-            return moduleExports != null && moduleExports.hasMember(name);
+            return export(name) != null;
         } finally {
             leave();
         }
@@ -201,10 +393,8 @@ public class JsEngine implements AutoCloseable {
     public Value executeSetup() {
         enter();
         try {
-            if (moduleExports != null && moduleExports.hasMember("setup")) {
-                return moduleExports.getMember("setup").execute();
-            }
-            return null;
+            Value setupFn = export("setup");
+            return setupFn != null ? setupFn.execute() : null;
         } finally {
             leave();
         }
@@ -217,14 +407,9 @@ public class JsEngine implements AutoCloseable {
     public void executeFunction(String name, Object data) {
         enter();
         try {
-            if (moduleExports != null && moduleExports.hasMember(name)) {
-                Value fn = moduleExports.getMember(name);
-                if (data != null) {
-                    fn.execute(data);
-                } else {
-                    fn.execute();
-                }
-                processEvents(); 
+            Value fn = export(name);
+            if (fn != null) {
+                settle(data != null ? fn.execute(data) : fn.execute());
             }
         } finally {
             leave();
@@ -234,14 +419,9 @@ public class JsEngine implements AutoCloseable {
     public void executeTeardown(Object data) {
         enter();
         try {
-            if (moduleExports != null && moduleExports.hasMember("teardown")) {
-                Value teardownFn = moduleExports.getMember("teardown");
-                if (data != null) {
-                    teardownFn.execute(data);
-                } else {
-                    teardownFn.execute();
-                }
-                processEvents();
+            Value teardownFn = export("teardown");
+            if (teardownFn != null) {
+                settle(data != null ? teardownFn.execute(data) : teardownFn.execute());
             }
         } finally {
             leave();
@@ -289,6 +469,7 @@ public class JsEngine implements AutoCloseable {
     }
 
     public void close() {
+        disown();
         for (LyocellModule module : installedModules) {
             try {
                 module.close();
@@ -32,6 +32,7 @@ public class ScenarioParser {
             case "constant-vus" -> parseConstantVus(map);
             case "ramping-vus" -> parseRampingVus(map);
             case "constant-arrival-rate" -> parseConstantArrivalRate(map);
+            case "ramping-arrival-rate" -> parseRampingArrivalRate(map);
             default -> throw new IllegalArgumentException("Unknown executor type: " + executorType);
         };
 
@@ -94,6 +95,24 @@ public class ScenarioParser {
         );
     }
 
+    private static RampingArrivalRateConfig parseRampingArrivalRate(Map<String, Object> map) {
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> stagesList = (List<Map<String, Object>>) map.get("stages");
+        List<RampingArrivalRateConfig.Stage> stages = stagesList == null ? List.of() : stagesList.stream()
+            .map(m -> new RampingArrivalRateConfig.Stage(parseDuration(m.get("duration")), asDouble(m.get("target"))))
+            .collect(Collectors.toList());
+
+        return new RampingArrivalRateConfig(
+            asDouble(map.getOrDefault("startRate", 0.0)),
+            parseDuration(map.getOrDefault("timeUnit", "1s")),
+            stages,
+            asInt(map.getOrDefault("preAllocatedVUs", 0)),
+            asInt(map.getOrDefault("maxVUs", 0)),
+            parseDuration(map.get("startTime")),
+            parseDuration(map.getOrDefault("gracefulStop", "30s"))
+        );
+    }
+
     private static int asInt(Object obj) {
         if (obj instanceof Number n) return n.intValue();
         if (obj instanceof String s) return Integer.parseInt(s);
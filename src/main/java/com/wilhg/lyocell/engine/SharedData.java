@@ -0,0 +1,133 @@
+package com.wilhg.lyocell.engine;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.graalvm.polyglot.Value;
+import org.graalvm.polyglot.proxy.ProxyArray;
+import org.graalvm.polyglot.proxy.ProxyObject;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The {@code setup()} result as one immutable tree shared by the contexts of all VUs.
+ * <p>
+ * As in k6 the data leaves the setup context as JSON, but it is parsed once here rather than
+ * once per VU. Objects and arrays become read-only {@link ProxyObject}/{@link ProxyArray} views,
+ * so its memory does not grow with the number of VUs. Scripts can read it but not change it.
+ */
+public final class SharedData {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private SharedData() {}
+
+    /**
+     * Converts the JSON of a {@code setup()} result; {@code null} stays {@code null}.
+     */
+    public static Object fromJson(String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return convert(MAPPER.readTree(json));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid setup data: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    private static Object convert(JsonNode node) {
+        return switch (node.getNodeType()) {
+            case OBJECT -> {
+                Map<String, Object> members = new LinkedHashMap<>();
+                for (Map.Entry<String, JsonNode> property : node.properties()) {
+                    members.put(property.getKey(), convert(property.getValue()));
+                }
+                yield new ReadOnlyObject(members);
+            }
+            case ARRAY -> {
+                Object[] elements = new Object[node.size()];
+                for (int i = 0; i < elements.length; i++) {
+                    elements[i] = convert(node.get(i));
+                }
+                yield new ReadOnlyArray(elements);
+            }
+            case STRING -> node.textValue();
+            case BOOLEAN -> node.booleanValue();
+            case NUMBER -> {
+                if (node.canConvertToInt() && node.isIntegralNumber()) yield node.intValue();
+                if (node.canConvertToLong() && node.isIntegralNumber()) yield node.longValue();
+                yield node.doubleValue();
+            }
+            default -> null;
+        };
+    }
+
+    private static final class ReadOnlyObject implements ProxyObject {
+        private final Map<String, Object> members;
+        private final ReadOnlyArray keys;
+
+        ReadOnlyObject(Map<String, Object> members) {
+            this.members = Collections.unmodifiableMap(members);
+            this.keys = new ReadOnlyArray(members.keySet().toArray());
+        }
+
+        @Override
+        public Object getMember(String key) {
+            return members.get(key);
+        }
+
+        @Override
+        public Object getMemberKeys() {
+            return keys;
+        }
+
+        @Override
+        public boolean hasMember(String key) {
+            return members.containsKey(key);
+        }
+
+        @Override
+        public void putMember(String key, Value value) {
+            throw new UnsupportedOperationException("setup() data is read-only");
+        }
+
+        @Override
+        public boolean removeMember(String key) {
+            throw new UnsupportedOperationException("setup() data is read-only");
+        }
+    }
+
+    private static final class ReadOnlyArray implements ProxyArray {
+        private final Object[] elements;
+
+        ReadOnlyArray(Object[] elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        public Object get(long index) {
+            if (index < 0 || index >= elements.length) {
+                throw new ArrayIndexOutOfBoundsException((int) Math.min(index, Integer.MAX_VALUE));
+            }
+            return elements[(int) index];
+        }
+
+        @Override
+        public void set(long index, Value value) {
+            throw new UnsupportedOperationException("setup() data is read-only");
+        }
+
+        @Override
+        public boolean remove(long index) {
+            throw new UnsupportedOperationException("setup() data is read-only");
+        }
+
+        @Override
+        public long getSize() {
+            return elements.length;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.wilhg.lyocell.engine;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.graalvm.polyglot.Source;
+
+import com.wilhg.lyocell.metrics.MetricsCollector;
+import com.wilhg.lyocell.modules.ModuleRegistry;
+
+/**
+ * Caches the user script and the virtual {@code lyocell/*} module sources for a test run.
+ * <p>
+ * Every VU context is built on the same polyglot {@link org.graalvm.polyglot.Engine}, so handing
+ * them identical {@link Source} objects lets GraalJS parse each file once and keep the compiled
+ * code warm across VUs.
+ */
+public class SourceCache {
+    private final Map<Path, Source> scripts = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> modules = new ConcurrentHashMap<>();
+
+    public Source getScript(Path scriptPath) throws IOException {
+        try {
+            return scripts.computeIfAbsent(scriptPath.toAbsolutePath().normalize(), path -> {
+                try {
+                    return Source.newBuilder("js", path.toFile())
+                            .mimeType("application/javascript+module")
+                            .build();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Returns the encoded source of a virtual module, or {@code null} if the name is not a known module.
+     */
+    public byte[] getModule(String name, MetricsCollector metricsCollector) {
+        byte[] cached = modules.get(name);
+        if (cached != null) {
+            return cached;
+        }
+        String js = ModuleRegistry.getModuleJs(name, metricsCollector);
+        if (js == null) {
+            return null;
+        }
+        byte[] bytes = js.getBytes(StandardCharsets.UTF_8);
+        modules.putIfAbsent(name, bytes);
+        return bytes;
+    }
+}
@@ -12,28 +12,42 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.StructuredTaskScope;
 import java.util.concurrent.StructuredTaskScope.Joiner;
 
+import org.graalvm.polyglot.Engine;
 import org.graalvm.polyglot.Value;
 
 import com.wilhg.lyocell.cli.CliAnimation;
 import com.wilhg.lyocell.engine.executor.ConstantArrivalRateExecutor;
 import com.wilhg.lyocell.engine.executor.ConstantVusExecutor;
 import com.wilhg.lyocell.engine.executor.PerVuIterationsExecutor;
+import com.wilhg.lyocell.engine.executor.RampingArrivalRateExecutor;
 import com.wilhg.lyocell.engine.executor.RampingVusExecutor;
 import com.wilhg.lyocell.engine.executor.SharedIterationsExecutor;
 import com.wilhg.lyocell.engine.scenario.ConstantArrivalRateConfig;
 import com.wilhg.lyocell.engine.scenario.ConstantVusConfig;
 import com.wilhg.lyocell.engine.scenario.PerVuIterationsConfig;
+import com.wilhg.lyocell.engine.scenario.RampingArrivalRateConfig;
 import com.wilhg.lyocell.engine.scenario.RampingVusConfig;
 import com.wilhg.lyocell.engine.scenario.Scenario;
 import com.wilhg.lyocell.engine.scenario.SharedIterationsConfig;
 import com.wilhg.lyocell.metrics.MetricsCollector;
 import com.wilhg.lyocell.metrics.SummaryReporter;
+import com.wilhg.lyocell.metrics.Threshold;
+import com.wilhg.lyocell.metrics.ThresholdEvaluator;
 import com.wilhg.lyocell.metrics.TimeSeriesData;
+import com.wilhg.lyocell.modules.HttpConnectionPool;
+import com.wilhg.lyocell.modules.HttpEngine;
+import com.wilhg.lyocell.modules.JdkHttpEngine;
+import com.wilhg.lyocell.modules.NettyHttpEngine;
 import com.wilhg.lyocell.report.HtmlReportRenderer;
 
 public class TestEngine {
+    private static volatile Engine sharedEngine;
+
     private final Map<String, Object> extraBindings;
+    private final SourceCache sourceCache = new SourceCache();
     private final MetricsCollector metricsCollector = new MetricsCollector();
+    private volatile HttpEngine httpEngine = new JdkHttpEngine(HttpConnectionPool.perVu(metricsCollector));
+    private volatile boolean discardResponseBodies = false;
     private volatile boolean aborted = false;
     private final List<OutputConfig> initialOutputs;
     private final HtmlReportRenderer htmlReportRenderer = new HtmlReportRenderer();
@@ -47,6 +61,31 @@ public class TestEngine {
         this.initialOutputs = initialOutputs;
     }
 
+    /**
+     * Returns the process-wide polyglot engine that every VU context is created on.
+     * Sharing it lets parsed sources and JIT-compiled code survive across contexts.
+     */
+    public static Engine getSharedEngine() {
+        Engine engine = sharedEngine;
+        if (engine == null) {
+            synchronized (TestEngine.class) {
+                engine = sharedEngine;
+                if (engine == null) {
+                    engine = Engine.newBuilder("js")
+                            .allowExperimentalOptions(true)
+                            .option("engine.WarnVirtualThreadSupport", "false")
+                            .build();
+                    sharedEngine = engine;
+                }
+            }
+        }
+        return engine;
+    }
+
+    public SourceCache getSourceCache() {
+        return sourceCache;
+    }
+
     public void abort() {
         this.aborted = true;
     }
@@ -79,6 +118,29 @@ public class TestEngine {
         }
     }
 
+    @SuppressWarnings("unchecked")
+    private void configureMetricsFromOptions(Map<String, Object> options) {
+        if (options == null) return;
+        List<String> stats = (List<String>) options.get("summaryTrendStats");
+        int precision = MetricsCollector.DEFAULT_TREND_PRECISION;
+        if (options.get("lyocell") instanceof Map<?, ?> lyocell && lyocell.get("trendPrecision") instanceof Number n) {
+            precision = n.intValue();
+        }
+        metricsCollector.configureTrends(stats, precision);
+        if (options.get("lyocell") instanceof Map<?, ?> lyocell && lyocell.get("timeSeriesResolution") != null) {
+            metricsCollector.configureTimeSeries(ScenarioParser.parseDuration(lyocell.get("timeSeriesResolution")));
+        }
+        if (options.get("lyocell") instanceof Map<?, ?> lyocell && lyocell.get("timeSeriesByTags") instanceof List<?> metrics) {
+            metricsCollector.configureTimeSeriesByTags(metrics.stream().map(String::valueOf).toList());
+        }
+        if (options.get("lyocell") instanceof Map<?, ?> lyocell && lyocell.get("maxSeriesPerMetric") instanceof Number n) {
+            metricsCollector.configureCardinality(n.intValue());
+        }
+        if (options.get("lyocell") instanceof Map<?, ?> lyocell && lyocell.get("metricsFlushInterval") != null) {
+            metricsCollector.configureBuffering(ScenarioParser.parseDuration(lyocell.get("metricsFlushInterval")));
+        }
+    }
+
     private final List<String> htmlReportPaths = new java.util.concurrent.CopyOnWriteArrayList<>();
 
     private void registerOutput(OutputConfig output) {
@@ -87,6 +149,57 @@ public class TestEngine {
         }
     }
 
+    /**
+     * Reads k6's {@code noConnectionReuse} and {@code noVUConnectionReuse} plus
+     * {@code options.lyocell.httpConnectionScope} ({@code vu}, {@code shared} or {@code none}),
+     * {@code options.lyocell.maxConnectionsPerHost}, {@code options.lyocell.httpEngine}
+     * ({@code jdk} or {@code netty}), {@code options.lyocell.httpEngineThreads} and k6's
+     * {@code discardResponseBodies}. Runs before any VU sends a request.
+     */
+    private void configureHttpFromOptions(Map<String, Object> options) {
+        if (options == null) return;
+        HttpConnectionPool.Scope scope = HttpConnectionPool.Scope.VU;
+        int maxConnectionsPerHost = 0;
+        HttpEngine.Kind kind = HttpEngine.Kind.JDK;
+        int engineThreads = 0;
+        if (options.get("lyocell") instanceof Map<?, ?> lyocell) {
+            if (lyocell.get("httpEngine") instanceof String s) {
+                kind = HttpEngine.Kind.parse(s);
+            }
+            if (lyocell.get("httpEngineThreads") instanceof Number n) {
+                engineThreads = n.intValue();
+            }
+            if (lyocell.get("httpConnectionScope") instanceof String s) {
+                scope = HttpConnectionPool.Scope.parse(s);
+            }
+            if (lyocell.get("maxConnectionsPerHost") instanceof Number n) {
+                maxConnectionsPerHost = n.intValue();
+            }
+        }
+        if (Boolean.TRUE.equals(options.get("noConnectionReuse"))) {
+            scope = HttpConnectionPool.Scope.NONE;
+        }
+        boolean reuseAcrossIterations = !Boolean.TRUE.equals(options.get("noVUConnectionReuse"));
+        discardResponseBodies = Boolean.TRUE.equals(options.get("discardResponseBodies"));
+        HttpEngine previous = httpEngine;
+        httpEngine = switch (kind) {
+            case JDK -> new JdkHttpEngine(new HttpConnectionPool(scope, reuseAcrossIterations, maxConnectionsPerHost, metricsCollector));
+            case NETTY -> new NettyHttpEngine(engineThreads, scope, maxConnectionsPerHost, metricsCollector);
+        };
+        previous.close();
+    }
+
+    public HttpEngine getHttpEngine() {
+        return httpEngine;
+    }
+
+    /**
+     * Whether requests without a {@code responseType} drop their bodies.
+     */
+    public boolean isDiscardResponseBodies() {
+        return discardResponseBodies;
+    }
+
     public MetricsCollector getMetricsCollector() {
         return metricsCollector;
     }
@@ -121,6 +234,7 @@ public class TestEngine {
             case ConstantVusConfig _ -> new ConstantVusExecutor();
             case RampingVusConfig _ -> new RampingVusExecutor();
             case ConstantArrivalRateConfig _ -> new ConstantArrivalRateExecutor();
+            case RampingArrivalRateConfig _ -> new RampingArrivalRateExecutor();
         };
     }
 
@@ -128,8 +242,9 @@ public class TestEngine {
         // Configure Outputs from initial config
         configureOutputs(initialOutputs);
 
-        String setupDataJson = null;
+        Object setupData = null;
         Map<String, Object> options = null;
+        List<Threshold> thresholds = List.of();
 
         // 1. Setup Phase (Single Thread)
         try (JsEngine setupEngine = new JsEngine(extraBindings, metricsCollector, this)) {
@@ -141,6 +256,9 @@ public class TestEngine {
                     Map<String, Object> optionsMap = optionsValue.as(Map.class);
                     options = optionsMap;
                     configureOutputsFromOptions(options);
+                    configureMetricsFromOptions(options);
+                    configureHttpFromOptions(options);
+                    thresholds = parseThresholds(options);
 
                     if (options != null && options.containsKey("scenarios")) {
                         @SuppressWarnings("unchecked")
@@ -162,17 +280,30 @@ public class TestEngine {
 
                 if (setupEngine.hasExport("setup")) {
                     var data = setupEngine.executeSetup();
-                    setupDataJson = setupEngine.toJson(data);
+                    setupData = SharedData.fromJson(setupEngine.toJson(data));
                 }
             } catch (Exception e) {
                 throw new RuntimeException("Setup failed", e);
             }
 
-            final String finalSetupDataJson = setupDataJson;
+            final Object finalSetupData = setupData;
 
-            // 2. Execution Phase (Parallel Scenarios)
-            try (CliAnimation animation = new CliAnimation("Running test...")) {
+            // 2. Init Phase: build every VU the scenarios need before the clock starts
+            int requiredVus = 0;
+            int vuCapacity = 0;
+            for (Scenario scenario : config.scenarios().values()) {
+                requiredVus += scenario.executor().requiredVus();
+                vuCapacity += scenario.executor().vuCapacity();
+            }
+
+            // 3. Execution Phase (Parallel Scenarios), thresholds evaluated live so abortOnFail can stop it
+            ThresholdEvaluator thresholdEvaluator = new ThresholdEvaluator(thresholds, metricsCollector, this::abort);
+            try (thresholdEvaluator;
+                 VuPool vuPool = new VuPool(scriptPath, extraBindings, finalSetupData, metricsCollector, this, vuCapacity);
+                 CliAnimation animation = new CliAnimation("Initializing " + requiredVus + " VUs...")) {
                 animation.start();
+                vuPool.preAllocate(requiredVus);
+                thresholdEvaluator.start(ThresholdEvaluator.DEFAULT_INTERVAL);
                 Set<String> activeScenarios = ConcurrentHashMap.newKeySet();
                 try (var scope = StructuredTaskScope.open(Joiner.awaitAllSuccessfulOrThrow())) {
                     for (Scenario scenario : config.scenarios().values()) {
@@ -183,7 +314,7 @@ public class TestEngine {
                             long start = System.currentTimeMillis();
                             try {
                                 WorkloadExecutor executor = getExecutor(scenario);
-                                executor.execute(scenario, scriptPath, extraBindings, finalSetupDataJson, metricsCollector, this);
+                                executor.execute(scenario, vuPool, metricsCollector, this);
                             } finally {
                                 long durationMs = System.currentTimeMillis() - start;
                                 activeScenarios.remove(scenario.name());
@@ -197,18 +328,17 @@ public class TestEngine {
                 }
             }
 
-            // 3. Teardown Phase
+            // 4. Teardown Phase
             try {
                 if (setupEngine.hasExport("teardown")) {
-                    Object data = setupEngine.parseJsonData(setupDataJson);
-                    setupEngine.executeTeardown(data);
+                    setupEngine.executeTeardown(setupData);
                 }
             } catch (Exception e) {
                 throw new RuntimeException("Teardown failed", e);
             }
 
-            // 4. Check Thresholds (while engine is still open)
-            checkThresholds(options);
+            // 5. Check Thresholds (while engine is still open)
+            checkThresholds(thresholdEvaluator);
         } catch (RuntimeException e) {
             if (e.getMessage() != null && e.getMessage().contains("Thresholds failed")) {
                 throw e;
@@ -219,14 +349,15 @@ public class TestEngine {
             if (e instanceof ExecutionException) throw e;
             throw new RuntimeException("Test execution failed", e);
         } finally {
+            httpEngine.close();
             // Close registries to flush metrics
             metricsCollector.getRegistry().close();
         }
 
-        // 5. Final Report
+        // 6. Final Report
         new SummaryReporter().report(metricsCollector);
 
-        // 6. Generate HTML Reports
+        // 7. Generate HTML Reports
         if (!htmlReportPaths.isEmpty()) {
             SequencedCollection<TimeSeriesData> timelineData = metricsCollector.getIterationTimeline(1000); // 1-second buckets
             for (String pathString : htmlReportPaths) {
@@ -242,34 +373,17 @@ public class TestEngine {
     }
 
     @SuppressWarnings("unchecked")
-    private void checkThresholds(Map<String, Object> options) {
-        if (options == null || !options.containsKey("thresholds")) return;
-
-        Map<String, Object> thresholds = (Map<String, Object>) options.get("thresholds");
-
-        for (Map.Entry<String, Object> entry : thresholds.entrySet()) {
-            String metricName = entry.getKey();
-            List<String> rules = (List<String>) entry.getValue();
-
-            for (String rule : rules) {
-                checkRule(metricName, rule);
-            }
-        }
+    private List<Threshold> parseThresholds(Map<String, Object> options) {
+        if (options == null || !(options.get("thresholds") instanceof Map<?, ?> thresholds)) return List.of();
+        return Threshold.parse((Map<String, Object>) thresholds, ScenarioParser::parseDuration);
     }
 
-    private void checkRule(String metricName, String rule) {
-        if (metricName.equals("checks") && rule.startsWith("rate<")) {
-            double limit = Double.parseDouble(rule.substring(5));
-            long pass = metricsCollector.getCounterValue("checks.pass");
-            long fail = metricsCollector.getCounterValue("checks.fail");
-            long total = pass + fail;
-
-            if (total > 0) {
-                double failureRate = (double) fail / total;
-                if (failureRate > limit) {
-                    throw new RuntimeException("Thresholds failed: checks failure rate " + failureRate + " > " + limit);
-                }
-            }
+    private void checkThresholds(ThresholdEvaluator thresholdEvaluator) {
+        List<ThresholdEvaluator.Failure> failures = thresholdEvaluator.evaluate();
+        if (!failures.isEmpty()) {
+            throw new RuntimeException("Thresholds failed: " + failures.stream()
+                    .map(ThresholdEvaluator.Failure::toString)
+                    .collect(java.util.stream.Collectors.joining(", ")));
         }
     }
 
@@ -0,0 +1,183 @@
+package com.wilhg.lyocell.engine;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hashed timer wheel: every timer of the process is kept by one driver thread in a ring of
+ * buckets, one per tick, so scheduling and cancelling are O(1) and no timer owns a thread.
+ * <p>
+ * Timers fire on the driver thread, at most one tick late; their tasks should only hand work
+ * over, e.g. with {@link JsEngine#executeAsync}. The driver parks while no timer is scheduled.
+ */
+public final class TimerWheel {
+    private static final TimerWheel SHARED = new TimerWheel(TimeUnit.MILLISECONDS.toNanos(1), 512);
+
+    private final long tickNanos;
+    private final ArrayDeque<Timeout>[] buckets;
+    private final int mask;
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final long startNanos = System.nanoTime();
+    private volatile Thread driver;
+    // Only touched by the driver
+    private long tick;
+
+    @SuppressWarnings("unchecked")
+    TimerWheel(long tickNanos, int wheelSize) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Wheel size must be a power of two: " + wheelSize);
+        }
+        this.tickNanos = tickNanos;
+        this.buckets = new ArrayDeque[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+        this.mask = wheelSize - 1;
+    }
+
+    /**
+     * The wheel shared by all VUs, with 1 ms ticks.
+     */
+    public static TimerWheel shared() {
+        return SHARED;
+    }
+
+    /**
+     * Runs {@code task} on the driver thread once {@code delayMillis} have passed.
+     */
+    public Timeout schedule(long delayMillis, Runnable task) {
+        Timeout timeout = new Timeout(System.nanoTime() - startNanos + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis)), task);
+        size.incrementAndGet();
+        scheduled.add(timeout);
+        Thread current = driver;
+        if (current == null) {
+            current = startDriver();
+        }
+        LockSupport.unpark(current);
+        return timeout;
+    }
+
+    /**
+     * Timers scheduled and neither fired nor cancelled yet.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    private synchronized Thread startDriver() {
+        if (driver == null) {
+            driver = Thread.ofPlatform().name("lyocell-timer-wheel").daemon().start(this::run);
+        }
+        return driver;
+    }
+
+    private void run() {
+        while (true) {
+            awaitNextTick();
+            transferScheduled();
+            expire(buckets[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    /**
+     * Parks until the current tick has ended, or for good while no timer is scheduled.
+     */
+    private void awaitNextTick() {
+        while (true) {
+            if (size.get() == 0) {
+                LockSupport.park(this);
+                // Nothing was due in the skipped ticks, so the wheel can jump to the present
+                tick = Math.max(tick, (System.nanoTime() - startNanos) / tickNanos);
+                continue;
+            }
+            long remaining = startNanos + (tick + 1) * tickNanos - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    private void transferScheduled() {
+        Timeout timeout;
+        while ((timeout = scheduled.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            long due = timeout.deadlineNanos / tickNanos;
+            timeout.rounds = Math.max(0, (due - tick) / buckets.length);
+            // Timers already due go into the current bucket
+            buckets[(int) (Math.max(due, tick) & mask)].add(timeout);
+        }
+    }
+
+    private void expire(ArrayDeque<Timeout> bucket) {
+        Iterator<Timeout> timeouts = bucket.iterator();
+        while (timeouts.hasNext()) {
+            Timeout timeout = timeouts.next();
+            if (timeout.cancelled) {
+                timeouts.remove();
+            } else if (timeout.rounds > 0) {
+                timeout.rounds--;
+            } else {
+                timeouts.remove();
+                if (timeout.fire()) {
+                    try {
+                        timeout.task.run();
+                    } catch (Throwable t) {
+                        System.err.println("Timer task failed: " + t.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    public final class Timeout {
+        private final long deadlineNanos;
+        private final Runnable task;
+        private volatile boolean cancelled;
+        private boolean done;
+        // Only touched by the driver
+        private long rounds;
+
+        private Timeout(long deadlineNanos, Runnable task) {
+            this.deadlineNanos = deadlineNanos;
+            this.task = task;
+        }
+
+        /**
+         * Stops the timer if it has not fired yet; it leaves the wheel on its next visit.
+         *
+         * @return Whether the timer was still pending.
+         */
+        public boolean cancel() {
+            synchronized (this) {
+                if (done) {
+                    return false;
+                }
+                done = true;
+                cancelled = true;
+            }
+            size.decrementAndGet();
+            return true;
+        }
+
+        private boolean fire() {
+            synchronized (this) {
+                if (done) {
+                    return false;
+                }
+                done = true;
+            }
+            size.decrementAndGet();
+            return true;
+        }
+    }
+}
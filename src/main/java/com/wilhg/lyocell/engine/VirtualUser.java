@@ -0,0 +1,92 @@
+package com.wilhg.lyocell.engine;
+
+import com.wilhg.lyocell.engine.scenario.Scenario;
+import com.wilhg.lyocell.metrics.MetricsBuffer;
+import com.wilhg.lyocell.metrics.MetricsCollector;
+
+/**
+ * A fully initialized VU: its own JS context with the init stage already evaluated
+ * and the setup() data already parsed. Instances are owned by a {@link VuPool} and
+ * lent to executors for the duration of their work.
+ */
+public class VirtualUser implements AutoCloseable {
+    private final int id;
+    private final JsEngine engine;
+    private final Object setupData;
+    private final MetricsCollector metricsCollector;
+    private final MetricsBuffer metricsBuffer;
+
+    VirtualUser(int id, JsEngine engine, Object setupData, MetricsCollector metricsCollector) {
+        this.id = id;
+        this.engine = engine;
+        this.setupData = setupData;
+        this.metricsCollector = metricsCollector;
+        this.metricsBuffer = metricsCollector != null ? metricsCollector.newBuffer() : null;
+    }
+
+    public int id() {
+        return id;
+    }
+
+    public JsEngine engine() {
+        return engine;
+    }
+
+    /**
+     * Runs one iteration of the scenario's exported function and records its duration and outcome.
+     *
+     * @param scenario The scenario whose {@code exec} function is called.
+     * @param iteration The iteration number exposed through {@link ExecutionContext}.
+     */
+    public void runIteration(Scenario scenario, int iteration) {
+        runIteration(scenario.exec(), new ExecutionContext(id, iteration, scenario.name(), metricsBuffer));
+    }
+
+    /**
+     * Runs one open-model iteration that was scheduled to start at {@code scheduledAtNanos}
+     * ({@link System#nanoTime()} based), so latency can be corrected for coordinated omission.
+     */
+    public void runScheduledIteration(Scenario scenario, int iteration, long scheduledAtNanos) {
+        runIteration(scenario.exec(), new ExecutionContext(id, iteration, System.nanoTime() - scheduledAtNanos, scenario.name(), metricsBuffer));
+    }
+
+    private void runIteration(String exec, ExecutionContext executionContext) {
+        // The borrowing thread keeps the context entered until the VU goes back to the pool
+        engine.own();
+        ScopedValue.where(ExecutionContext.CURRENT, executionContext).run(() -> {
+            long start = System.currentTimeMillis();
+            try {
+                executeFunction(exec);
+                metricsCollector.recordIteration(System.currentTimeMillis() - start, true);
+            } catch (Exception e) {
+                metricsCollector.recordIteration(System.currentTimeMillis() - start, false);
+                System.err.println("Iteration failed for VU " + id + ": " + e.getMessage());
+            }
+        });
+    }
+
+    private void executeFunction(String funcName) {
+        if (funcName.equals("default")) {
+            engine.executeDefault(setupData);
+        } else if (engine.hasExport(funcName)) {
+            engine.executeFunction(funcName, setupData);
+        } else {
+            throw new RuntimeException("Function not found: " + funcName);
+        }
+    }
+
+    /**
+     * Merges the samples this VU buffered locally into the shared metrics.
+     */
+    public void flushMetrics() {
+        if (metricsBuffer != null) {
+            metricsBuffer.flush();
+        }
+    }
+
+    @Override
+    public void close() {
+        flushMetrics();
+        engine.close();
+    }
+}
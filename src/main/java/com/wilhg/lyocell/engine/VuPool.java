@@ -0,0 +1,189 @@
+package com.wilhg.lyocell.engine;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.StructuredTaskScope.Joiner;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.wilhg.lyocell.metrics.GaugeMetric;
+import com.wilhg.lyocell.metrics.MetricsCollector;
+
+/**
+ * Pool of pre-initialized VUs shared by all executors and scenarios of a test run.
+ * <p>
+ * Mirrors k6's {@code preAllocatedVUs}/{@code maxVUs}: {@link #preAllocate(int)} builds the
+ * contexts before the execution phase starts, executors borrow them with {@link #acquire()}
+ * or {@link #tryAcquire()} and hand them back with {@link #release(VirtualUser)}. The pool only
+ * creates additional VUs on demand while it is below its capacity.
+ */
+public class VuPool implements AutoCloseable {
+    private final Path scriptPath;
+    private final Map<String, Object> extraBindings;
+    private final Object setupData;
+    private final MetricsCollector metricsCollector;
+    private final TestEngine testEngine;
+    private final int capacity;
+
+    private final BlockingDeque<VirtualUser> idle = new LinkedBlockingDeque<>();
+    private final List<VirtualUser> all = new CopyOnWriteArrayList<>();
+    private final AtomicInteger created = new AtomicInteger(0);
+    private final AtomicInteger inUse = new AtomicInteger(0);
+    private final GaugeMetric vusGauge;
+    private final GaugeMetric vusMaxGauge;
+
+    public VuPool(
+        Path scriptPath,
+        Map<String, Object> extraBindings,
+        Object setupData,
+        MetricsCollector metricsCollector,
+        TestEngine testEngine,
+        int capacity
+    ) {
+        this.scriptPath = scriptPath;
+        this.extraBindings = extraBindings;
+        this.setupData = setupData;
+        this.metricsCollector = metricsCollector;
+        this.testEngine = testEngine;
+        this.capacity = capacity;
+        this.vusGauge = metricsCollector.gauge("vus");
+        this.vusMaxGauge = metricsCollector.gauge("vus_max");
+    }
+
+    /**
+     * Initializes up to {@code count} VUs in parallel and parks them as idle.
+     */
+    public void preAllocate(int count) throws InterruptedException {
+        int toCreate = Math.min(count, capacity) - created.get();
+        if (toCreate <= 0) return;
+
+        try (var scope = StructuredTaskScope.open(Joiner.awaitAllSuccessfulOrThrow())) {
+            for (int i = 0; i < toCreate; i++) {
+                scope.fork(() -> {
+                    VirtualUser vu = tryCreate();
+                    if (vu != null) {
+                        idle.offer(vu);
+                    }
+                    return null;
+                });
+            }
+            scope.join();
+        }
+    }
+
+    /**
+     * Borrows a VU, creating one if the pool is still below capacity, otherwise waiting for a release.
+     */
+    public VirtualUser acquire() throws InterruptedException {
+        VirtualUser vu = tryAcquire();
+        return vu != null ? vu : lend(idle.take());
+    }
+
+    /**
+     * Borrows a VU without waiting. Returns {@code null} when all VUs are busy and the pool is at capacity.
+     */
+    public VirtualUser tryAcquire() {
+        VirtualUser vu = idle.poll();
+        if (vu == null) {
+            vu = tryCreate();
+        }
+        return vu != null ? lend(vu) : null;
+    }
+
+    /**
+     * Borrows an idle VU without creating one. Returns {@code null} if none is idle.
+     */
+    public VirtualUser tryAcquireIdle() {
+        VirtualUser vu = idle.poll();
+        return vu != null ? lend(vu) : null;
+    }
+
+    /**
+     * Claims room for one more VU without building it, so a caller on a latency-sensitive thread
+     * can hand the initialization to another one with {@link #createReserved(int)}.
+     *
+     * @return The id of the VU to create, or {@code -1} if the pool is at capacity.
+     */
+    public int reserve() {
+        int id;
+        do {
+            id = created.get();
+            if (id >= capacity) return -1;
+        } while (!created.compareAndSet(id, id + 1));
+        return id + 1;
+    }
+
+    /**
+     * Initializes the VU of a {@link #reserve()}d id and borrows it; the slot is given back if it fails.
+     */
+    public VirtualUser createReserved(int id) {
+        return lend(create(id));
+    }
+
+    /**
+     * Hands a VU back. Must be called on the thread that ran its iterations, which gives up
+     * its hold on the VU's context here.
+     */
+    public void release(VirtualUser vu) {
+        if (vu != null) {
+            vu.engine().disown();
+            // An idle VU records nothing, so publish what it buffered before parking it
+            vu.flushMetrics();
+            vusGauge.set(inUse.decrementAndGet());
+            idle.offerFirst(vu);
+        }
+    }
+
+    private VirtualUser lend(VirtualUser vu) {
+        vusGauge.set(inUse.incrementAndGet());
+        return vu;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return created.get();
+    }
+
+    private VirtualUser tryCreate() {
+        int id = reserve();
+        return id > 0 ? create(id) : null;
+    }
+
+    private VirtualUser create(int id) {
+        JsEngine engine = null;
+        try {
+            engine = new JsEngine(extraBindings, metricsCollector, testEngine);
+            engine.runScript(scriptPath);
+            VirtualUser vu = new VirtualUser(id, engine, setupData, metricsCollector);
+            all.add(vu);
+            vusMaxGauge.set(all.size());
+            return vu;
+        } catch (Exception e) {
+            if (engine != null) {
+                engine.close();
+            }
+            created.decrementAndGet();
+            throw new RuntimeException("VU " + id + " failed to initialize: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (VirtualUser vu : all) {
+            try {
+                vu.close();
+            } catch (Exception e) {
+                // Ignore cleanup errors
+            }
+        }
+        all.clear();
+        idle.clear();
+    }
+}
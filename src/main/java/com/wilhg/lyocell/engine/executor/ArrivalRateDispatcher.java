@@ -0,0 +1,127 @@
+package com.wilhg.lyocell.engine.executor;
+
+import com.wilhg.lyocell.engine.VirtualUser;
+import com.wilhg.lyocell.engine.VuPool;
+import com.wilhg.lyocell.engine.scenario.Scenario;
+import com.wilhg.lyocell.metrics.CounterMetric;
+import com.wilhg.lyocell.metrics.MetricsCollector;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Starts open-model iterations on VUs borrowed from the {@link VuPool}.
+ * <p>
+ * A scenario never holds more than {@code maxVus} VUs at once. When every VU it may use is
+ * busy the iteration is not queued but counted as {@code dropped_iterations}, like k6 does.
+ */
+class ArrivalRateDispatcher implements AutoCloseable {
+    private final Scenario scenario;
+    private final int maxVus;
+    private final VuPool vuPool;
+    private final CounterMetric droppedIterations;
+    private final ExecutorService iterationThreads = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger vusInUse = new AtomicInteger(0);
+    private final AtomicInteger iterationCounter = new AtomicInteger(0);
+
+    ArrivalRateDispatcher(Scenario scenario, int maxVus, VuPool vuPool, MetricsCollector metricsCollector) {
+        this.scenario = scenario;
+        this.maxVus = maxVus;
+        this.vuPool = vuPool;
+        this.droppedIterations = metricsCollector.counter("dropped_iterations", Map.of("scenario", scenario.name()));
+    }
+
+    /**
+     * Starts one iteration on an idle VU, growing the scenario's VU set up to {@code maxVus}.
+     * A VU that still has to be initialized counts as in use while its init runs on its own thread.
+     *
+     * @param scheduledAtNanos The {@link System#nanoTime()} at which the iteration was due to start.
+     * @return {@code false} if the iteration had to be dropped; one whose VU then fails to initialize
+     *         is dropped later.
+     */
+    boolean dispatch(long scheduledAtNanos) {
+        int inUse;
+        do {
+            inUse = vusInUse.get();
+            if (inUse >= maxVus) {
+                drop();
+                return false;
+            }
+        } while (!vusInUse.compareAndSet(inUse, inUse + 1));
+
+        VirtualUser vu = vuPool.tryAcquireIdle();
+        if (vu != null) {
+            int iteration = iterationCounter.incrementAndGet();
+            iterationThreads.submit(() -> runIteration(vu, iteration, scheduledAtNanos));
+            return true;
+        }
+
+        int id = vuPool.reserve();
+        if (id < 0) {
+            vusInUse.decrementAndGet();
+            drop();
+            return false;
+        }
+        // Initializing a VU runs the whole script; like k6, do it off the scheduling thread so
+        // later arrivals keep their start times, and run the iteration once the VU is ready
+        int iteration = iterationCounter.incrementAndGet();
+        iterationThreads.submit(() -> {
+            VirtualUser created;
+            try {
+                created = vuPool.createReserved(id);
+            } catch (RuntimeException e) {
+                vusInUse.decrementAndGet();
+                System.err.println(e.getMessage());
+                drop();
+                return;
+            }
+            runIteration(created, iteration, scheduledAtNanos);
+        });
+        return true;
+    }
+
+    private void runIteration(VirtualUser vu, int iteration, long scheduledAtNanos) {
+        try {
+            vu.runScheduledIteration(scenario, iteration, scheduledAtNanos);
+        } finally {
+            vuPool.release(vu);
+            vusInUse.decrementAndGet();
+        }
+    }
+
+    private void drop() {
+        droppedIterations.increment();
+    }
+
+    /**
+     * Waits for in-flight iterations, interrupting the ones still running after {@code gracefulStop}.
+     */
+    void awaitCompletion(Duration gracefulStop) throws InterruptedException {
+        iterationThreads.shutdown();
+        if (!iterationThreads.awaitTermination(gracefulStop.toMillis(), TimeUnit.MILLISECONDS)) {
+            iterationThreads.shutdownNow();
+        }
+    }
+
+    @Override
+    public void close() {
+        iterationThreads.shutdownNow();
+    }
+
+    /**
+     * Parks the calling thread until {@link System#nanoTime()} reaches {@code deadline}.
+     */
+    static void parkUntil(long deadline) throws InterruptedException {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+}
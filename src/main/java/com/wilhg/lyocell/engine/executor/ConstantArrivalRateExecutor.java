@@ -1,27 +1,18 @@
 package com.wilhg.lyocell.engine.executor;
 
-import com.wilhg.lyocell.engine.ExecutionContext;
-import com.wilhg.lyocell.engine.JsEngine;
 import com.wilhg.lyocell.engine.TestEngine;
+import com.wilhg.lyocell.engine.VuPool;
 import com.wilhg.lyocell.engine.WorkloadExecutor;
 import com.wilhg.lyocell.engine.scenario.ConstantArrivalRateConfig;
 import com.wilhg.lyocell.engine.scenario.Scenario;
 import com.wilhg.lyocell.metrics.MetricsCollector;
-import java.nio.file.Path;
-import java.util.Map;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 
 public class ConstantArrivalRateExecutor implements WorkloadExecutor {
     @Override
     public void execute(
         Scenario scenario,
-        Path scriptPath,
-        Map<String, Object> extraBindings,
-        String setupDataJson,
+        VuPool vuPool,
         MetricsCollector metricsCollector,
         TestEngine testEngine
     ) throws InterruptedException, ExecutionException {
@@ -31,52 +22,29 @@ public class ConstantArrivalRateExecutor implements WorkloadExecutor {
             Thread.sleep(config.startTime());
         }
 
-        // Use a pool for VUs. k6 calls these preAllocatedVUs.
-        ExecutorService vuPool = Executors.newVirtualThreadPerTaskExecutor();
-        AtomicInteger activeIterations = new AtomicInteger(0);
-        AtomicInteger iterationCounter = new AtomicInteger(0);
-
-        long durationMs = config.duration().toMillis();
-        long startTime = System.currentTimeMillis();
-        double ratePerMs = config.rate() / config.timeUnit().toMillis();
-        
-        long iterationsTriggered = 0;
-
-        while (System.currentTimeMillis() - startTime < durationMs && !testEngine.isAborted()) {
-            long elapsed = System.currentTimeMillis() - startTime;
-            long shouldHaveTriggered = (long) (elapsed * ratePerMs);
+        if (config.rate() <= 0) {
+            return;
+        }
 
-            while (iterationsTriggered < shouldHaveTriggered && !testEngine.isAborted()) {
-                iterationsTriggered++;
-                int iterationId = iterationCounter.incrementAndGet();
-                
-                vuPool.submit(() -> {
-                    activeIterations.incrementAndGet();
-                    try (JsEngine engine = new JsEngine(extraBindings, metricsCollector, testEngine)) {
-                        engine.runScript(scriptPath);
-                        Object data = engine.parseJsonData(setupDataJson);
-                        
-                        ScopedValue.where(ExecutionContext.CURRENT, new ExecutionContext(0, iterationId)).run(() -> {
-                            long start = System.currentTimeMillis();
-                            try {
-                                engine.executeFunction(scenario.exec(), data);
-                                metricsCollector.recordIteration(System.currentTimeMillis() - start, true);
-                            } catch (Exception e) {
-                                metricsCollector.recordIteration(System.currentTimeMillis() - start, false);
-                            }
-                        });
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    } finally {
-                        activeIterations.decrementAndGet();
-                    }
-                });
+        // Iterations are started on a fixed nanoTime grid, so a slow iteration never delays the next arrival
+        double intervalNanos = config.timeUnit().toNanos() / config.rate();
+        long start = System.nanoTime();
+        long durationNanos = config.duration().toNanos();
+
+        try (ArrivalRateDispatcher dispatcher = new ArrivalRateDispatcher(scenario, config.vuCapacity(), vuPool, metricsCollector)) {
+            for (long i = 0; !testEngine.isAborted(); i++) {
+                long offset = (long) (i * intervalNanos);
+                if (offset >= durationNanos) {
+                    break;
+                }
+                long scheduledAt = start + offset;
+                ArrivalRateDispatcher.parkUntil(scheduledAt);
+                if (testEngine.isAborted()) {
+                    break;
+                }
+                dispatcher.dispatch(scheduledAt);
             }
-            
-            Thread.sleep(1); // Small sleep to prevent busy wait
+            dispatcher.awaitCompletion(config.gracefulStop());
         }
-
-        vuPool.shutdown();
-        vuPool.awaitTermination(config.gracefulStop().toMillis(), TimeUnit.MILLISECONDS);
     }
 }
@@ -1,13 +1,12 @@
 package com.wilhg.lyocell.engine.executor;
 
 import com.wilhg.lyocell.engine.TestEngine;
+import com.wilhg.lyocell.engine.VuPool;
 import com.wilhg.lyocell.engine.VuWorker;
 import com.wilhg.lyocell.engine.WorkloadExecutor;
 import com.wilhg.lyocell.engine.scenario.PerVuIterationsConfig;
 import com.wilhg.lyocell.engine.scenario.Scenario;
 import com.wilhg.lyocell.metrics.MetricsCollector;
-import java.nio.file.Path;
-import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.StructuredTaskScope;
 import java.util.concurrent.StructuredTaskScope.Joiner;
@@ -16,9 +15,7 @@ public class PerVuIterationsExecutor implements WorkloadExecutor {
     @Override
     public void execute(
         Scenario scenario,
-        Path scriptPath,
-        Map<String, Object> extraBindings,
-        String setupDataJson,
+        VuPool vuPool,
         MetricsCollector metricsCollector,
         TestEngine testEngine
     ) throws InterruptedException, ExecutionException {
@@ -31,17 +28,12 @@ public class PerVuIterationsExecutor implements WorkloadExecutor {
 
         try (var scope = StructuredTaskScope.open(Joiner.awaitAllSuccessfulOrThrow())) {
             for (int i = 0; i < config.vus(); i++) {
-                int vuId = i;
                 scope.fork(() -> {
                     new VuWorker(
-                        vuId, 
-                        scriptPath, 
-                        extraBindings, 
-                        setupDataJson, 
-                        metricsCollector, 
+                        vuPool,
                         config.iterations(),
                         testEngine,
-                        scenario.exec()
+                        scenario
                     ).run();
                     return null;
                 });
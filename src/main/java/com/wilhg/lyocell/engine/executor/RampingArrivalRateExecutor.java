@@ -0,0 +1,78 @@
+package com.wilhg.lyocell.engine.executor;
+
+import com.wilhg.lyocell.engine.TestEngine;
+import com.wilhg.lyocell.engine.VuPool;
+import com.wilhg.lyocell.engine.WorkloadExecutor;
+import com.wilhg.lyocell.engine.scenario.RampingArrivalRateConfig;
+import com.wilhg.lyocell.engine.scenario.Scenario;
+import com.wilhg.lyocell.metrics.MetricsCollector;
+import java.util.concurrent.ExecutionException;
+
+public class RampingArrivalRateExecutor implements WorkloadExecutor {
+    @Override
+    public void execute(
+        Scenario scenario,
+        VuPool vuPool,
+        MetricsCollector metricsCollector,
+        TestEngine testEngine
+    ) throws InterruptedException, ExecutionException {
+        RampingArrivalRateConfig config = (RampingArrivalRateConfig) scenario.executor();
+
+        if (config.startTime() != null && !config.startTime().isZero()) {
+            Thread.sleep(config.startTime());
+        }
+
+        double unitNanos = config.timeUnit().toNanos();
+        long start = System.nanoTime();
+
+        try (ArrivalRateDispatcher dispatcher = new ArrivalRateDispatcher(scenario, config.vuCapacity(), vuPool, metricsCollector)) {
+            // Rates are linear within a stage, so the arrival count is a quadratic in time
+            // and every start offset can be solved for exactly instead of polling the clock.
+            double fromRate = config.startRate() / unitNanos;
+            double stageStart = 0;
+            double arrivalsBefore = 0;
+            long next = config.startRate() > 0 ? 0 : 1;
+
+            stages:
+            for (RampingArrivalRateConfig.Stage stage : config.stages()) {
+                double toRate = stage.target() / unitNanos;
+                double duration = stage.duration().toNanos();
+                double stageArrivals = (fromRate + toRate) / 2 * duration;
+
+                while (next < arrivalsBefore + stageArrivals) {
+                    if (testEngine.isAborted()) {
+                        break stages;
+                    }
+                    double offset = offsetInStage(next - arrivalsBefore, fromRate, toRate, duration);
+                    long scheduledAt = start + (long) (stageStart + offset);
+                    ArrivalRateDispatcher.parkUntil(scheduledAt);
+                    if (testEngine.isAborted()) {
+                        break stages;
+                    }
+                    dispatcher.dispatch(scheduledAt);
+                    next++;
+                }
+
+                arrivalsBefore += stageArrivals;
+                stageStart += duration;
+                fromRate = toRate;
+            }
+            dispatcher.awaitCompletion(config.gracefulStop());
+        }
+    }
+
+    /**
+     * Solves {@code from * t + (to - from) * t^2 / (2 * duration) = arrivals} for {@code t}.
+     * <p>
+     * Uses the rationalized root {@code 2a / (f + sqrt(f^2 + 2sa))}, which stays exact as the
+     * slope {@code s} approaches zero instead of cancelling in {@code (sqrt(...) - f) / s}.
+     */
+    static double offsetInStage(double arrivals, double fromRate, double toRate, double duration) {
+        if (arrivals <= 0) {
+            return 0;
+        }
+        double slope = (toRate - fromRate) / duration;
+        double discriminant = Math.max(0, fromRate * fromRate + 2 * slope * arrivals);
+        return 2 * arrivals / (fromRate + Math.sqrt(discriminant));
+    }
+}
@@ -1,17 +1,14 @@
 package com.wilhg.lyocell.engine.executor;
 
-import com.wilhg.lyocell.engine.ExecutionContext;
-import com.wilhg.lyocell.engine.JsEngine;
 import com.wilhg.lyocell.engine.TestEngine;
+import com.wilhg.lyocell.engine.VirtualUser;
+import com.wilhg.lyocell.engine.VuPool;
 import com.wilhg.lyocell.engine.WorkloadExecutor;
 import com.wilhg.lyocell.engine.scenario.RampingVusConfig;
 import com.wilhg.lyocell.engine.scenario.Scenario;
 import com.wilhg.lyocell.metrics.MetricsCollector;
 
-import java.nio.file.Path;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -21,9 +18,7 @@ public class RampingVusExecutor implements WorkloadExecutor {
     @Override
     public void execute(
             Scenario scenario,
-            Path scriptPath,
-            Map<String, Object> extraBindings,
-            String setupDataJson,
+            VuPool vuPool,
             MetricsCollector metricsCollector,
             TestEngine testEngine
     ) throws InterruptedException, ExecutionException {
@@ -68,28 +63,19 @@ public class RampingVusExecutor implements WorkloadExecutor {
         while (running.get() && !testEngine.isAborted()) {
             int currentTarget = targetVus.get();
             while (activeVus.get() < currentTarget) {
-                int vuId = activeVus.getAndIncrement();
+                activeVus.getAndIncrement();
                 Thread t = Thread.ofVirtual().start(() -> {
-                    try (JsEngine engine = new JsEngine(extraBindings, metricsCollector, testEngine)) {
-                        engine.runScript(scriptPath);
-                        Object data = engine.parseJsonData(setupDataJson);
+                    VirtualUser vu = null;
+                    try {
+                        vu = vuPool.acquire();
                         int iteration = 0;
                         while (activeVus.get() <= targetVus.get() && running.get() && !testEngine.isAborted()) {
-                            iteration++;
-                            final int currentIteration = iteration;
-                            ScopedValue.where(ExecutionContext.CURRENT, new ExecutionContext(vuId + 1, currentIteration)).run(() -> {
-                                long start = System.currentTimeMillis();
-                                try {
-                                    engine.executeFunction(scenario.exec(), data);
-                                    metricsCollector.recordIteration(System.currentTimeMillis() - start, true);
-                                } catch (Exception e) {
-                                    metricsCollector.recordIteration(System.currentTimeMillis() - start, false);
-                                }
-                            });
+                            vu.runIteration(scenario, ++iteration);
                         }
                     } catch (Exception e) {
                         e.printStackTrace();
                     } finally {
+                        vuPool.release(vu);
                         activeVus.decrementAndGet();
                     }
                 });
@@ -15,4 +15,14 @@ public record ConstantArrivalRateConfig(
     public String type() {
         return "constant-arrival-rate";
     }
+
+    @Override
+    public int requiredVus() {
+        return preAllocatedVUs;
+    }
+
+    @Override
+    public int vuCapacity() {
+        return Math.max(1, Math.max(preAllocatedVUs, maxVUs));
+    }
 }
@@ -12,4 +12,9 @@ public record ConstantVusConfig(
     public String type() {
         return "constant-vus";
     }
+
+    @Override
+    public int requiredVus() {
+        return vus;
+    }
 }
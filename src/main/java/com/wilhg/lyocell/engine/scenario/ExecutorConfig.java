@@ -7,6 +7,19 @@ public sealed interface ExecutorConfig permits
     SharedIterationsConfig, 
     ConstantVusConfig, 
     RampingVusConfig, 
-    ConstantArrivalRateConfig {
+    ConstantArrivalRateConfig,
+    RampingArrivalRateConfig {
     String type();
+
+    /**
+     * Number of VUs that must be initialized before the scenario starts.
+     */
+    int requiredVus();
+
+    /**
+     * Upper bound of VUs the scenario may hold at the same time.
+     */
+    default int vuCapacity() {
+        return requiredVus();
+    }
 }
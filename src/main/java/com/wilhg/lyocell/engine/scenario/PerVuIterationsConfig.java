@@ -12,4 +12,9 @@ public record PerVuIterationsConfig(
     public String type() {
         return "per-vu-iterations";
     }
+
+    @Override
+    public int requiredVus() {
+        return vus;
+    }
 }
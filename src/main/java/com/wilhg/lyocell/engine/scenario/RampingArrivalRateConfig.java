@@ -0,0 +1,31 @@
+package com.wilhg.lyocell.engine.scenario;
+
+import java.time.Duration;
+import java.util.List;
+
+public record RampingArrivalRateConfig(
+    double startRate,
+    Duration timeUnit,
+    List<Stage> stages,
+    int preAllocatedVUs,
+    int maxVUs,
+    Duration startTime,
+    Duration gracefulStop
+) implements ExecutorConfig {
+    public record Stage(Duration duration, double target) {}
+
+    @Override
+    public String type() {
+        return "ramping-arrival-rate";
+    }
+
+    @Override
+    public int requiredVus() {
+        return preAllocatedVUs;
+    }
+
+    @Override
+    public int vuCapacity() {
+        return Math.max(1, Math.max(preAllocatedVUs, maxVUs));
+    }
+}
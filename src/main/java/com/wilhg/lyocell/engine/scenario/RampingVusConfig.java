@@ -16,4 +16,13 @@ public record RampingVusConfig(
     public String type() {
         return "ramping-vus";
     }
+
+    @Override
+    public int requiredVus() {
+        int max = startVUs;
+        for (Stage stage : stages) {
+            max = Math.max(max, stage.target());
+        }
+        return max;
+    }
 }
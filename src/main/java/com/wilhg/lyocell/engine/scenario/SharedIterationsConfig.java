@@ -13,4 +13,9 @@ public record SharedIterationsConfig(
     public String type() {
         return "shared-iterations";
     }
+
+    @Override
+    public int requiredVus() {
+        return vus;
+    }
 }
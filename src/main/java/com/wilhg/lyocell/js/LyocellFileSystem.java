@@ -1,7 +1,7 @@
 package com.wilhg.lyocell.js;
 
+import com.wilhg.lyocell.engine.SourceCache;
 import com.wilhg.lyocell.metrics.MetricsCollector;
-import com.wilhg.lyocell.modules.ModuleRegistry;
 import org.graalvm.polyglot.io.FileSystem;
 import java.io.IOException;
 import java.net.URI;
@@ -14,13 +14,19 @@ import java.util.Set;
 public class LyocellFileSystem implements FileSystem {
     private final FileSystem delegate = FileSystem.newDefaultFileSystem();
     private final MetricsCollector metricsCollector;
+    private final SourceCache sourceCache;
 
     public LyocellFileSystem() {
         this(new MetricsCollector());
     }
 
     public LyocellFileSystem(MetricsCollector metricsCollector) {
+        this(metricsCollector, new SourceCache());
+    }
+
+    public LyocellFileSystem(MetricsCollector metricsCollector, SourceCache sourceCache) {
         this.metricsCollector = metricsCollector;
+        this.sourceCache = sourceCache;
     }
 
     @Override
@@ -43,7 +49,7 @@ public class LyocellFileSystem implements FileSystem {
     public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) throws IOException {
         String pathStr = path.toString();
         if (isVirtualModule(pathStr)) {
-            String content = ModuleRegistry.getModuleJs(pathStr, metricsCollector);
+            byte[] content = sourceCache.getModule(pathStr, metricsCollector);
             if (content != null) {
                 return new ReadOnlyStringChannel(content);
             }
@@ -66,9 +72,9 @@ public class LyocellFileSystem implements FileSystem {
     @Override
     public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options) throws IOException {
         if (isVirtualModule(path.toString())) {
-            String content = ModuleRegistry.getModuleJs(path.toString(), metricsCollector);
+            byte[] content = sourceCache.getModule(path.toString(), metricsCollector);
             if (content != null) {
-                return Map.of("isRegularFile", true, "size", (long) content.length());
+                return Map.of("isRegularFile", true, "size", (long) content.length);
             }
         }
         return delegate.readAttributes(path, attributes, options);
@@ -95,7 +101,7 @@ public class LyocellFileSystem implements FileSystem {
         private final byte[] content;
         private int position = 0;
 
-        public ReadOnlyStringChannel(String content) { this.content = content.getBytes(); }
+        public ReadOnlyStringChannel(byte[] content) { this.content = content; }
         @Override public int read(java.nio.ByteBuffer dst) {
             if (position >= content.length) return -1;
             int n = Math.min(dst.remaining(), content.length - position);
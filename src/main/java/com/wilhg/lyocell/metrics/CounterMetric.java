@@ -0,0 +1,36 @@
+package com.wilhg.lyocell.metrics;
+
+import java.util.concurrent.atomic.DoubleAdder;
+
+/// A k6 Counter: a cumulative sum that also feeds its per-interval [MetricTimeSeries].
+public class CounterMetric {
+    private final DoubleAdder total = new DoubleAdder();
+    private final MetricTimeSeries series;
+
+    CounterMetric(MetricTimeSeries series) {
+        this.series = series;
+    }
+
+    public void increment() {
+        increment(1);
+    }
+
+    public void increment(double amount) {
+        MetricsBuffer buffer = MetricsBuffer.current();
+        if (buffer != null) {
+            buffer.record(this, amount);
+            return;
+        }
+        total.add(amount);
+        series.record(amount);
+    }
+
+    void addBatch(int interval, MetricsBuffer.Pending batch) {
+        total.add(batch.sum);
+        series.add(interval, batch.count, batch.sum, batch.max, batch.last, null);
+    }
+
+    public double count() {
+        return total.sum();
+    }
+}
@@ -0,0 +1,22 @@
+package com.wilhg.lyocell.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/// A k6 Gauge holding the last value set, stored as raw bits so updates do not box.
+public class GaugeMetric {
+    private final AtomicLong bits = new AtomicLong(Double.doubleToRawLongBits(0));
+    private final MetricTimeSeries series;
+
+    GaugeMetric(MetricTimeSeries series) {
+        this.series = series;
+    }
+
+    public void set(double value) {
+        bits.set(Double.doubleToRawLongBits(value));
+        series.record(value);
+    }
+
+    public double value() {
+        return Double.longBitsToDouble(bits.get());
+    }
+}
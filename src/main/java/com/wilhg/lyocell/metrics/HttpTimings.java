@@ -0,0 +1,49 @@
+package com.wilhg.lyocell.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/// Where the time of one HTTP request went, in milliseconds, following k6's `res.timings`.
+///
+/// @param blocked Waiting for a connection before the request could start
+/// @param connecting Establishing the TCP connection
+/// @param tlsHandshaking Negotiating TLS on a new connection
+/// @param sending Writing the request
+/// @param waiting Waiting for the first response byte (server think time)
+/// @param receiving Reading the response body
+/// @param duration The whole request, from start to the last response byte
+public record HttpTimings(
+        double blocked,
+        double connecting,
+        double tlsHandshaking,
+        double sending,
+        double waiting,
+        double receiving,
+        double duration
+) {
+    /// The Trend metrics the phases are recorded as, in request order.
+    public static final List<String> PHASE_METRICS = List.of(
+            "http_req_blocked", "http_req_connecting", "http_req_tls_handshaking",
+            "http_req_sending", "http_req_waiting", "http_req_receiving");
+
+    public static final HttpTimings NONE = new HttpTimings(0, 0, 0, 0, 0, 0, 0);
+
+    /// The phase durations in the order of [#PHASE_METRICS].
+    public double[] phases() {
+        return new double[]{blocked, connecting, tlsHandshaking, sending, waiting, receiving};
+    }
+
+    /// The timings keyed as in k6's `res.timings`.
+    public Map<String, Double> asMap() {
+        Map<String, Double> map = new LinkedHashMap<>();
+        map.put("duration", duration);
+        map.put("blocked", blocked);
+        map.put("connecting", connecting);
+        map.put("tls_handshaking", tlsHandshaking);
+        map.put("sending", sending);
+        map.put("waiting", waiting);
+        map.put("receiving", receiving);
+        return map;
+    }
+}
@@ -0,0 +1,37 @@
+package com.wilhg.lyocell.metrics;
+
+import java.time.Duration;
+
+/// Maps wall-clock time to interval indexes shared by every [MetricTimeSeries] of a collector.
+final class IntervalClock {
+    static final Duration DEFAULT_RESOLUTION = Duration.ofSeconds(1);
+
+    private volatile long startMillis;
+    private volatile long resolutionMillis = DEFAULT_RESOLUTION.toMillis();
+
+    IntervalClock() {
+        long now = System.currentTimeMillis();
+        this.startMillis = now - now % 1000;
+    }
+
+    /// Changes the interval length. Meant to be called before samples are recorded.
+    void setResolution(Duration resolution) {
+        this.resolutionMillis = Math.max(1, resolution.toMillis());
+    }
+
+    long resolutionMillis() {
+        return resolutionMillis;
+    }
+
+    int currentIndex() {
+        return indexAt(System.currentTimeMillis());
+    }
+
+    int indexAt(long timestampMillis) {
+        return (int) Math.max(0, (timestampMillis - startMillis) / resolutionMillis);
+    }
+
+    long timestampOf(int index) {
+        return startMillis + index * resolutionMillis;
+    }
+}
@@ -0,0 +1,15 @@
+package com.wilhg.lyocell.metrics;
+
+import java.util.Map;
+
+/// Identifies one time series: a metric name plus an immutable tag set.
+record MetricKey(String name, TagSet tags) {
+    static MetricKey of(String name, Map<String, String> tags) {
+        return new MetricKey(name, TagSet.of(tags));
+    }
+
+    /// Whether this series belongs to `metric` and carries every tag of `filter` (a k6 sub-metric).
+    boolean matches(String metric, Map<String, String> filter) {
+        return name.equals(metric) && tags.containsAll(filter);
+    }
+}
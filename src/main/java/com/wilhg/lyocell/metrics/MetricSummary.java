@@ -1,4 +1,4 @@
 package com.wilhg.lyocell.metrics;
 
-public record MetricSummary(double min, double max, double avg, long count, double p95, double p99) {
+public record MetricSummary(double min, double max, double avg, long count, double med, double p90, double p95, double p99) {
 }
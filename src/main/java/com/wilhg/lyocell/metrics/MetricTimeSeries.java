@@ -0,0 +1,177 @@
+package com.wilhg.lyocell.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.AbstractHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.PackedConcurrentHistogram;
+
+/// Per-interval aggregates of one metric series: sample count, sum, max, last value and,
+/// for Trends, a mergeable histogram.
+///
+/// Intervals are allocated on first sample, so idle periods cost one reference each.
+/// Trend intervals use packed histograms whose footprint follows the populated buckets.
+/// A series kept for one tag set also records into the `aggregate` series of its metric.
+public class MetricTimeSeries {
+    static final int CHUNK_INTERVALS = 256;
+    /// Significant digits of per-interval histograms; enough for charts, far smaller than the totals.
+    static final int HISTOGRAM_DIGITS = 2;
+
+    private final IntervalClock clock;
+    private final boolean withHistogram;
+    private final MetricTimeSeries aggregate;
+    private final AtomicInteger lastIndex = new AtomicInteger(-1);
+    private volatile AtomicReferenceArray<AtomicReferenceArray<Interval>> chunks = new AtomicReferenceArray<>(16);
+
+    MetricTimeSeries(IntervalClock clock, boolean withHistogram, MetricTimeSeries aggregate) {
+        this.clock = clock;
+        this.withHistogram = withHistogram;
+        this.aggregate = aggregate;
+    }
+
+    /// Aggregated samples of one interval.
+    ///
+    /// @param timestamp Start of the interval (epoch millis)
+    /// @param histogram Sample distribution in microseconds, `null` for non-Trend metrics
+    public record IntervalData(long timestamp, long count, double sum, double max, double last, Histogram histogram) {
+        public double avg() {
+            return count > 0 ? sum / count : 0;
+        }
+
+        /// Returns the value at `percentile` (0-100), or 0 if the interval has no histogram samples.
+        public double percentile(double percentile) {
+            if (histogram == null || histogram.getTotalCount() == 0) return 0;
+            return Math.min(max, histogram.getValueAtPercentile(percentile) / TrendHistogram.SCALE);
+        }
+    }
+
+    private final class Interval {
+        final LongAdder count = new LongAdder();
+        final DoubleAdder sum = new DoubleAdder();
+        final DoubleAccumulator max = new DoubleAccumulator(Math::max, Double.NEGATIVE_INFINITY);
+        final PackedConcurrentHistogram histogram = withHistogram ? new PackedConcurrentHistogram(HISTOGRAM_DIGITS) : null;
+        volatile double last;
+
+        void record(double value) {
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+            last = value;
+            if (histogram != null) {
+                histogram.recordValue(TrendHistogram.scaled(value));
+            }
+        }
+
+        void add(long n, double total, double maximum, double lastValue, AbstractHistogram samples) {
+            count.add(n);
+            sum.add(total);
+            max.accumulate(maximum);
+            last = lastValue;
+            if (histogram != null && samples != null) {
+                histogram.add(samples);
+            }
+        }
+
+        IntervalData snapshot(long timestamp) {
+            Histogram copy = null;
+            if (histogram != null) {
+                copy = new Histogram(HISTOGRAM_DIGITS);
+                copy.add(histogram);
+            }
+            long n = count.sum();
+            return new IntervalData(timestamp, n, sum.sum(), n > 0 ? max.get() : 0, last, copy);
+        }
+    }
+
+    public void record(double value) {
+        record(clock.currentIndex(), value);
+    }
+
+    private void record(int index, double value) {
+        lastIndex.accumulateAndGet(index, Math::max);
+        interval(index).record(value);
+        if (aggregate != null) {
+            aggregate.record(index, value);
+        }
+    }
+
+    /// Adds pre-aggregated samples to the interval at `index`.
+    void add(int index, long count, double sum, double max, double last, AbstractHistogram histogram) {
+        lastIndex.accumulateAndGet(index, Math::max);
+        interval(index).add(count, sum, max, last, histogram);
+        if (aggregate != null) {
+            aggregate.add(index, count, sum, max, last, histogram);
+        }
+    }
+
+    private Interval interval(int index) {
+        AtomicReferenceArray<Interval> chunk = chunk(index / CHUNK_INTERVALS);
+        int slot = index % CHUNK_INTERVALS;
+        Interval interval = chunk.get(slot);
+        if (interval == null) {
+            // Once per interval; locking keeps racing writers from each allocating a histogram
+            synchronized (chunk) {
+                interval = chunk.get(slot);
+                if (interval == null) {
+                    interval = new Interval();
+                    chunk.set(slot, interval);
+                }
+            }
+        }
+        return interval;
+    }
+
+    private AtomicReferenceArray<Interval> chunk(int chunkIndex) {
+        AtomicReferenceArray<AtomicReferenceArray<Interval>> current = chunks;
+        if (chunkIndex >= current.length()) {
+            current = grow(chunkIndex);
+        }
+        AtomicReferenceArray<Interval> chunk = current.get(chunkIndex);
+        if (chunk == null) {
+            current.compareAndSet(chunkIndex, null, new AtomicReferenceArray<>(CHUNK_INTERVALS));
+            chunk = current.get(chunkIndex);
+        }
+        return chunk;
+    }
+
+    private synchronized AtomicReferenceArray<AtomicReferenceArray<Interval>> grow(int chunkIndex) {
+        AtomicReferenceArray<AtomicReferenceArray<Interval>> current = chunks;
+        if (chunkIndex < current.length()) {
+            return current;
+        }
+        AtomicReferenceArray<AtomicReferenceArray<Interval>> grown = new AtomicReferenceArray<>(Math.max(chunkIndex + 1, current.length() * 2));
+        for (int i = 0; i < current.length(); i++) {
+            // Publish a chunk in the old directory too, so a racing writer still lands in the grown one
+            current.compareAndSet(i, null, new AtomicReferenceArray<>(CHUNK_INTERVALS));
+            grown.set(i, current.get(i));
+        }
+        chunks = grown;
+        return grown;
+    }
+
+    /// Returns the intervals that received samples so far, in time order.
+    public List<IntervalData> snapshot() {
+        int last = lastIndex.get();
+        List<IntervalData> result = new ArrayList<>();
+        AtomicReferenceArray<AtomicReferenceArray<Interval>> current = chunks;
+        for (int index = 0; index <= last; index++) {
+            int chunkIndex = index / CHUNK_INTERVALS;
+            AtomicReferenceArray<Interval> chunk = chunkIndex < current.length() ? current.get(chunkIndex) : null;
+            if (chunk == null) {
+                index = (chunkIndex + 1) * CHUNK_INTERVALS - 1;
+                continue;
+            }
+            Interval interval = chunk.get(index % CHUNK_INTERVALS);
+            if (interval != null) {
+                result.add(interval.snapshot(clock.timestampOf(index)));
+            }
+        }
+        return result;
+    }
+}
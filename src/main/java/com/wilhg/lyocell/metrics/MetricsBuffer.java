@@ -0,0 +1,142 @@
+package com.wilhg.lyocell.metrics;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.HdrHistogram.PackedHistogram;
+
+import com.wilhg.lyocell.engine.ExecutionContext;
+
+/// A VU-local staging area for Counter, Trend and Rate samples and timeline ticks.
+///
+/// While a VU runs an iteration, its buffer is bound through [ExecutionContext] and metric
+/// handles record into plain per-metric aggregates instead of the shared adders and histograms.
+/// The aggregates are merged into the [MetricsCollector] in one batch when the flush interval
+/// elapses, when the time-series interval or wall-clock second ends, and when the VU goes idle.
+/// As those checks run on the next sample, a VU about to park (e.g. in `sleep`) calls
+/// [#flushIfDueBy(long)] so its samples do not wait for it to wake up.
+/// A batch never spans two intervals, so time series and the timeline stay exact.
+///
+/// The monitor is only contended when a script forks work within an iteration (e.g. `http.batch`).
+public final class MetricsBuffer {
+    private final IntervalClock clock;
+    private final Timeline timeline;
+    private final long flushIntervalMillis;
+    private final Map<Object, Pending> pending = new IdentityHashMap<>();
+    private long openedAt = -1;
+    private int interval;
+    private long second;
+    private long timelineSuccesses;
+    private long timelineFailures;
+
+    /// Aggregated samples of one metric since the last flush.
+    static final class Pending {
+        final PackedHistogram histogram;
+        long count;
+        double sum;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double last;
+
+        Pending(PackedHistogram histogram) {
+            this.histogram = histogram;
+        }
+
+        void record(double value) {
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            last = value;
+            if (histogram != null) {
+                histogram.recordValue(TrendHistogram.scaled(value));
+            }
+        }
+
+        void reset() {
+            count = 0;
+            sum = 0;
+            min = Double.POSITIVE_INFINITY;
+            max = Double.NEGATIVE_INFINITY;
+            if (histogram != null) {
+                histogram.reset();
+            }
+        }
+    }
+
+    MetricsBuffer(IntervalClock clock, Timeline timeline, long flushIntervalMillis) {
+        this.clock = clock;
+        this.timeline = timeline;
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    /// Returns the buffer bound to the running iteration, or `null` to record directly.
+    static MetricsBuffer current() {
+        ExecutionContext ctx = ExecutionContext.get();
+        return ctx != null ? ctx.metrics() : null;
+    }
+
+    synchronized void record(Object metric, double value) {
+        roll();
+        Pending batch = pending.get(metric);
+        if (batch == null) {
+            batch = new Pending(metric instanceof TrendHistogram trend ? new PackedHistogram(trend.significantDigits()) : null);
+            pending.put(metric, batch);
+        }
+        batch.record(value);
+    }
+
+    synchronized void recordTimeline(boolean success) {
+        roll();
+        if (success) {
+            timelineSuccesses++;
+        } else {
+            timelineFailures++;
+        }
+    }
+
+    /// Flushes when the buffered samples belong to a past interval or second, or are older than the flush interval.
+    private void roll() {
+        long now = System.currentTimeMillis();
+        if (openedAt >= 0 && (now - openedAt >= flushIntervalMillis
+                || clock.indexAt(now) != interval || Math.floorDiv(now, 1000) != second)) {
+            flush();
+        }
+        if (openedAt < 0) {
+            openedAt = now;
+            interval = clock.indexAt(now);
+            second = Math.floorDiv(now, 1000);
+        }
+    }
+
+    /// Flushes now if the buffered samples will have outlived the flush interval at `untilMillis`.
+    ///
+    /// @param untilMillis Epoch millis until which no further sample is expected, e.g. the end of a sleep
+    public synchronized void flushIfDueBy(long untilMillis) {
+        if (openedAt >= 0 && untilMillis - openedAt >= flushIntervalMillis) {
+            flush();
+        }
+    }
+
+    /// Merges everything buffered so far into the shared metrics.
+    public synchronized void flush() {
+        if (openedAt < 0) return;
+        for (Map.Entry<Object, Pending> entry : pending.entrySet()) {
+            Pending batch = entry.getValue();
+            if (batch.count == 0) continue;
+            switch (entry.getKey()) {
+                case CounterMetric counter -> counter.addBatch(interval, batch);
+                case TrendHistogram trend -> trend.addBatch(interval, batch);
+                case RateMetric rate -> rate.addBatch(interval, batch);
+                default -> throw new IllegalStateException("Unbuffered metric: " + entry.getKey());
+            }
+            batch.reset();
+        }
+        if (timelineSuccesses + timelineFailures > 0) {
+            timeline.add(second * 1000, timelineSuccesses, timelineFailures);
+            timelineSuccesses = 0;
+            timelineFailures = 0;
+        }
+        openedAt = -1;
+    }
+}
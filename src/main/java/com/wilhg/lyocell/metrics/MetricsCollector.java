@@ -1,39 +1,77 @@
 package com.wilhg.lyocell.metrics;
 
-import io.micrometer.core.instrument.Counter;
-import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 import com.wilhg.lyocell.engine.ExecutionContext;
-import com.wilhg.lyocell.metrics.MetricSummary;
 
-import java.util.Comparator;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.SequencedCollection;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 /// A thread-safe collector for performance metrics using Micrometer.
 ///
 /// This class acts as a facade over Micrometer's MeterRegistry,
-/// mapping k6 metric types to Micrometer instruments.
+/// mapping k6 metric types to Micrometer instruments. Trends are kept in
+/// HDR histograms so that any percentile can be reported.
 public class MetricsCollector {
+    /// k6's default `summaryTrendStats`.
+    public static final List<String> DEFAULT_TREND_STATS = List.of("avg", "min", "med", "max", "p(90)", "p(95)");
+    public static final int DEFAULT_TREND_PRECISION = 3;
+    public static final int DEFAULT_MAX_SERIES_PER_METRIC = 1000;
+    public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofSeconds(1);
+
     private final CompositeMeterRegistry registry;
-    private final ConcurrentHashMap<String, AtomicReference<Double>> gaugeValues = new ConcurrentHashMap<>();
-    private final ConcurrentLinkedQueue<TimelineEvent> timelineEvents = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<MetricKey, CounterMetric> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<MetricKey, TrendHistogram> trends = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<MetricKey, GaugeMetric> gauges = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<MetricKey, RateMetric> rates = new ConcurrentHashMap<>();
+    // Live merges of the trend series matching a (name, tag filter), keyed by the filter as a MetricKey
+    private final ConcurrentHashMap<MetricKey, TrendHistogram> trendViews = new ConcurrentHashMap<>();
+    private volatile List<String> summaryTrendStats = DEFAULT_TREND_STATS;
+    private volatile int trendPrecision = DEFAULT_TREND_PRECISION;
+    private final Timeline timeline = new Timeline();
+    private final IntervalClock intervalClock = new IntervalClock();
+    // One time series per metric, so their memory does not grow with the number of tag sets
+    private final ConcurrentHashMap<String, MetricTimeSeries> timeSeries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<MetricKey, MetricTimeSeries> taggedTimeSeries = new ConcurrentHashMap<>();
+    private volatile Set<String> timeSeriesByTags = Set.of();
+    private final ConcurrentHashMap<String, AtomicInteger> seriesPerMetric = new ConcurrentHashMap<>();
+    private final Set<String> overflowWarned = ConcurrentHashMap.newKeySet();
+    private volatile int maxSeriesPerMetric = DEFAULT_MAX_SERIES_PER_METRIC;
+    private volatile long flushIntervalMillis = DEFAULT_FLUSH_INTERVAL.toMillis();
 
-    // Internal record to capture timeline events with timestamp
-    private record TimelineEvent(long timestamp, boolean success) {
-    }
+    // Handles used on every iteration
+    private final CounterMetric iterations;
+    private final CounterMetric iterationsFailed;
+    private final TrendHistogram iterationDuration;
+    private final TrendHistogram iterationDurationCorrected;
+    private final DataCounters unscopedData;
+    private final ConcurrentHashMap<String, DataCounters> dataByScenario = new ConcurrentHashMap<>();
+
+    /// The `data_sent` and `data_received` counters of one scenario, in bytes.
+    public record DataCounters(CounterMetric sent, CounterMetric received) {}
 
     public MetricsCollector() {
         this.registry = new CompositeMeterRegistry();
         this.registry.add(new SimpleMeterRegistry());
+        this.iterations = counter("iterations");
+        this.iterationsFailed = counter("iterations_failed");
+        this.iterationDuration = trend("iteration_duration");
+        this.iterationDurationCorrected = trend("iteration_duration_corrected");
+        this.unscopedData = new DataCounters(counter("data_sent"), counter("data_received"));
     }
 
     public CompositeMeterRegistry getRegistry() {
@@ -44,6 +82,217 @@ public class MetricsCollector {
         this.registry.add(childRegistry);
     }
 
+    /// Configures which statistics are reported for Trends and the histogram precision.
+    ///
+    /// @param stats k6 `summaryTrendStats` entries, e.g. `avg`, `med`, `p(99.9)`; `null` keeps the current list
+    /// @param significantDigits Significant decimal digits kept by Trend histograms that have no samples yet (1-5)
+    /// @throws IllegalArgumentException if a stat is not one {@link TrendHistogram#stat} understands
+    public void configureTrends(List<String> stats, int significantDigits) {
+        if (stats != null) {
+            for (String stat : stats) {
+                if (stat == null || !TrendHistogram.isValidStat(stat)) {
+                    throw new IllegalArgumentException("Invalid summaryTrendStats entry: " + stat
+                            + " (expected avg, min, med, max, count, sum or p(N) with N in 0-100)");
+                }
+            }
+        }
+        if (stats != null && !stats.isEmpty()) {
+            this.summaryTrendStats = List.copyOf(stats);
+        }
+        this.trendPrecision = Math.clamp(significantDigits, 1, 5);
+        // Handles resolved before the options were read are kept; only their (still empty) histograms are resized
+        trends.values().forEach(trend -> trend.setPrecisionIfEmpty(trendPrecision));
+        trendViews.values().forEach(view -> view.setPrecisionIfEmpty(trendPrecision));
+    }
+
+    public List<String> getSummaryTrendStats() {
+        return summaryTrendStats;
+    }
+
+    /// Sets the interval length of the per-metric time series (default one second).
+    public void configureTimeSeries(Duration resolution) {
+        intervalClock.setResolution(resolution);
+    }
+
+    public Duration getTimeSeriesResolution() {
+        return Duration.ofMillis(intervalClock.resolutionMillis());
+    }
+
+    /// Also keeps a time series per tag set for the given metrics, e.g. to chart each endpoint.
+    ///
+    /// Each of those costs as much memory as the metric's own series; meant to be called before samples are recorded.
+    public void configureTimeSeriesByTags(Collection<String> metrics) {
+        this.timeSeriesByTags = Set.copyOf(metrics);
+    }
+
+    private MetricTimeSeries newSeries(MetricKey key, boolean withHistogram) {
+        MetricTimeSeries aggregate = timeSeries.computeIfAbsent(key.name(), _ -> new MetricTimeSeries(intervalClock, withHistogram, null));
+        if (key.tags().isEmpty() || !timeSeriesByTags.contains(key.name())) {
+            return aggregate;
+        }
+        MetricTimeSeries series = new MetricTimeSeries(intervalClock, withHistogram, aggregate);
+        taggedTimeSeries.put(key, series);
+        return series;
+    }
+
+    /// Limits the number of tag sets per metric; further tag sets share the [TagSet#OVERFLOW] series.
+    public void configureCardinality(int maxSeriesPerMetric) {
+        this.maxSeriesPerMetric = Math.max(1, maxSeriesPerMetric);
+    }
+
+    /// Number of tag sets admitted for `name`, not counting the overflow series.
+    int seriesCount(String name) {
+        AtomicInteger count = seriesPerMetric.get(name);
+        return count != null ? count.get() : 0;
+    }
+
+    /// Admits one more tag set for `name`, or returns `false` once the metric reached its cap.
+    private boolean admitSeries(String name) {
+        AtomicInteger count = seriesPerMetric.computeIfAbsent(name, k -> new AtomicInteger());
+        if (count.incrementAndGet() <= maxSeriesPerMetric) {
+            return true;
+        }
+        count.decrementAndGet();
+        if (overflowWarned.add(name)) {
+            System.err.println("Metric '" + name + "' exceeded " + maxSeriesPerMetric
+                    + " tag sets; further ones are recorded under " + TagSet.OVERFLOW
+                    + ". Group dynamic URLs with the 'name' tag.");
+        }
+        return false;
+    }
+
+    /// Sets how long VUs may keep samples in their local [MetricsBuffer]; zero records every sample directly.
+    public void configureBuffering(Duration flushInterval) {
+        this.flushIntervalMillis = Math.max(0, flushInterval.toMillis());
+    }
+
+    /// Creates a VU-local buffer that batches samples into this collector, or `null` if buffering is disabled.
+    public MetricsBuffer newBuffer() {
+        long interval = flushIntervalMillis;
+        return interval > 0 ? new MetricsBuffer(intervalClock, timeline, interval) : null;
+    }
+
+    /// Looks up the series of `name` and `tags`, creating it unless the metric is at its cardinality cap.
+    private <T> T resolve(ConcurrentHashMap<MetricKey, T> series, String name, TagSet tags, Function<MetricKey, T> factory) {
+        MetricKey key = new MetricKey(name, tags);
+        T existing = series.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        // Admitted under the map's lock, so threads racing on one new tag set take a single slot
+        T created = series.computeIfAbsent(key, k -> admitSeries(name) ? factory.apply(k) : null);
+        if (created != null) {
+            return created;
+        }
+        return series.computeIfAbsent(new MetricKey(name, TagSet.OVERFLOW), factory);
+    }
+
+    /// Returns the counter for `name`, registering it on first use.
+    ///
+    /// Resolve handles once and keep them; recording on a handle does not allocate.
+    public CounterMetric counter(String name) {
+        return counter(name, TagSet.EMPTY);
+    }
+
+    /// Returns the counter for `name` and `tags`, registering it on first use.
+    public CounterMetric counter(String name, Map<String, String> tags) {
+        return counter(name, TagSet.of(tags));
+    }
+
+    /// Returns the counter for `name` and `tags`, registering it on first use.
+    public CounterMetric counter(String name, TagSet tags) {
+        return resolve(counters, name, tags, k -> {
+            CounterMetric c = new CounterMetric(newSeries(k, false));
+            FunctionCounter.Builder<CounterMetric> builder = FunctionCounter.builder(name, c, CounterMetric::count);
+            k.tags().forEach(builder::tag);
+            builder.register(registry);
+            return c;
+        });
+    }
+
+    /// Returns the histogram backing the untagged series of a trend, creating it on first use.
+    public TrendHistogram trend(String name) {
+        return trend(name, TagSet.EMPTY);
+    }
+
+    /// Returns the histogram backing a trend series, creating it on first use.
+    public TrendHistogram trend(String name, Map<String, String> tags) {
+        return trend(name, TagSet.of(tags));
+    }
+
+    /// Returns the histogram backing a trend series, creating it on first use.
+    public TrendHistogram trend(String name, TagSet tags) {
+        return resolve(trends, name, tags, k -> {
+            TrendHistogram trend = new TrendHistogram(trendPrecision, newSeries(k, true));
+            trendViews.forEach((filter, view) -> {
+                if (k.matches(filter.name(), filter.tags().asMap())) {
+                    trend.addView(view);
+                }
+            });
+            return trend;
+        });
+    }
+
+    /// Returns a histogram that merges the trend series whose tags include `tagFilter` as samples arrive.
+    ///
+    /// Unlike [#getTrend(String, Map)] it is created once and kept up to date, so reading it
+    /// repeatedly (e.g. for thresholds) does not re-merge every series. Samples already recorded
+    /// are merged when the view is created; create it while no samples are recorded concurrently.
+    public TrendHistogram trendView(String name, Map<String, String> tagFilter) {
+        return trendViews.computeIfAbsent(MetricKey.of(name, tagFilter), _ -> {
+            TrendHistogram view = new TrendHistogram(trendPrecision);
+            trends.forEach((key, trend) -> {
+                if (key.matches(name, tagFilter)) {
+                    trend.addView(view);
+                    view.add(trend);
+                }
+            });
+            return view;
+        });
+    }
+
+    /// Returns the untagged gauge for `name`, registering it on first use.
+    public GaugeMetric gauge(String name) {
+        return gauge(name, TagSet.EMPTY);
+    }
+
+    /// Returns the gauge for `name` and `tags`, registering it on first use.
+    public GaugeMetric gauge(String name, Map<String, String> tags) {
+        return gauge(name, TagSet.of(tags));
+    }
+
+    /// Returns the gauge for `name` and `tags`, registering it on first use.
+    public GaugeMetric gauge(String name, TagSet tags) {
+        return resolve(gauges, name, tags, k -> {
+            GaugeMetric g = new GaugeMetric(newSeries(k, false));
+            Gauge.Builder<GaugeMetric> builder = Gauge.builder(name, g, GaugeMetric::value);
+            k.tags().forEach(builder::tag);
+            builder.register(registry);
+            return g;
+        });
+    }
+
+    /// Returns the untagged rate for `name`, registering it on first use.
+    public RateMetric rate(String name) {
+        return rate(name, TagSet.EMPTY);
+    }
+
+    /// Returns the rate for `name` and `tags`, registering it on first use.
+    public RateMetric rate(String name, Map<String, String> tags) {
+        return rate(name, TagSet.of(tags));
+    }
+
+    /// Returns the rate for `name` and `tags`, registering it on first use.
+    public RateMetric rate(String name, TagSet tags) {
+        return resolve(rates, name, tags, k -> {
+            RateMetric r = new RateMetric(newSeries(k, false));
+            Gauge.Builder<RateMetric> builder = Gauge.builder(name, r, RateMetric::rate);
+            k.tags().forEach(builder::tag);
+            builder.register(registry);
+            return r;
+        });
+    }
+
     /// Adds a value to a cumulative counter.
     ///
     /// @param name The metric name (e.g., "http_reqs")
@@ -54,11 +303,7 @@ public class MetricsCollector {
 
     /// Adds a value to a cumulative counter with tags.
     public void addCounter(String name, long value, Map<String, String> tags) {
-        Counter.Builder builder = Counter.builder(name);
-        if (tags != null) {
-            tags.forEach(builder::tag);
-        }
-        builder.register(registry).increment(value);
+        counter(name, tags).increment(value);
     }
 
     /// Adds a sample to a trend metric.
@@ -71,12 +316,7 @@ public class MetricsCollector {
 
     /// Adds a sample to a trend metric with tags.
     public void addTrend(String name, double value, Map<String, String> tags) {
-        DistributionSummary.Builder builder = DistributionSummary.builder(name)
-                .publishPercentiles(0.95, 0.99);
-        if (tags != null) {
-            tags.forEach(builder::tag);
-        }
-        builder.register(registry).record(value);
+        trend(name, tags).record(value);
     }
 
     /// Sets a gauge to a specific value.
@@ -89,15 +329,7 @@ public class MetricsCollector {
 
     /// Sets a gauge to a specific value with tags.
     public void setGauge(String name, double value, Map<String, String> tags) {
-        gaugeValues.computeIfAbsent(name + (tags == null ? "" : tags.toString()), k -> {
-            AtomicReference<Double> ref = new AtomicReference<>(value);
-            Gauge.Builder<AtomicReference<Double>> builder = Gauge.builder(name, ref, AtomicReference::get);
-            if (tags != null) {
-                tags.forEach(builder::tag);
-            }
-            builder.register(registry);
-            return ref;
-        }).set(value);
+        gauge(name, tags).set(value);
     }
 
     /// Adds a boolean sample to a rate metric.
@@ -110,10 +342,7 @@ public class MetricsCollector {
 
     /// Adds a boolean sample to a rate metric with tags.
     public void addRate(String name, boolean value, Map<String, String> tags) {
-        addCounter(name + ".total", 1, tags);
-        if (value) {
-            addCounter(name + ".true", 1, tags);
-        }
+        rate(name, tags).add(value);
     }
 
     /**
@@ -124,17 +353,21 @@ public class MetricsCollector {
      * @param success True if the iteration was successful, false otherwise.
      */
     public void recordIteration(long duration, boolean success) {
-        addTrend("iteration_duration", duration);
-        addCounter("iterations", 1);
+        iterationDuration.record(duration);
+        iterations.increment();
         
         boolean finalSuccess = success;
         ExecutionContext ctx = ExecutionContext.get();
+        if (ctx != null && ctx.isScheduled()) {
+            // Measured from the scheduled start so queueing delay is not hidden (coordinated omission)
+            iterationDurationCorrected.record(duration + ctx.scheduleLagMillis());
+        }
         if (ctx != null && ctx.isFailed()) {
             finalSuccess = false;
         }
 
         if (!finalSuccess) {
-            addCounter("iterations_failed", 1);
+            iterationsFailed.increment();
         }
         recordTimelineEvent(finalSuccess);
     }
@@ -145,53 +378,111 @@ public class MetricsCollector {
      * @param success True if the event was successful, false otherwise.
      */
     public void recordTimelineEvent(boolean success) {
-        timelineEvents.offer(new TimelineEvent(System.currentTimeMillis(), success));
+        MetricsBuffer buffer = MetricsBuffer.current();
+        if (buffer != null) {
+            buffer.recordTimeline(success);
+            return;
+        }
+        timeline.record(success);
     }
 
     /**
-     * Aggregates raw timeline events into time-series data based on specified bucket duration.
+     * Aggregates the per-second timeline into time-series data based on specified bucket duration.
+     * May be called at any time during the test.
      *
-     * @param bucketDurationMillis The duration of each time bucket in milliseconds.
+     * @param bucketDurationMillis The duration of each time bucket in milliseconds (whole seconds).
      * @return A list of TimeSeriesData, sorted by timestamp.
      */
-    public java.util.SequencedCollection<TimeSeriesData> getIterationTimeline(long bucketDurationMillis) {
-        if (timelineEvents.isEmpty()) {
-            return java.util.List.of();
-        }
-
-        long startTime = timelineEvents.stream()
-                .mapToLong(TimelineEvent::timestamp)
-                .min()
-                .orElse(System.currentTimeMillis());
-
-        Map<Long, List<TimelineEvent>> groupedByBucket = timelineEvents.stream()
-                .collect(Collectors.groupingBy(event -> {
-                    long relativeTime = event.timestamp() - startTime;
-                    return (relativeTime / bucketDurationMillis) * bucketDurationMillis;
-                }));
-
-        return groupedByBucket.entrySet().stream()
-                .map(entry -> {
-                    long bucketStartRelativeTime = entry.getKey();
-                    long successful = 0;
-                    long failed = 0;
-                    for (TimelineEvent event : entry.getValue()) {
-                        if (event.success()) {
-                            successful++;
-                        } else {
-                            failed++;
-                        }
-                    }
-                    return new TimeSeriesData(startTime + bucketStartRelativeTime, successful, failed);
-                })
-                .sorted(Comparator.comparing(TimeSeriesData::timestamp))
-                .toList();
+    public SequencedCollection<TimeSeriesData> getIterationTimeline(long bucketDurationMillis) {
+        return timeline.snapshot(bucketDurationMillis);
     }
 
-
+    /// Returns the total of a counter across all of its tag sets.
     public long getCounterValue(String name) {
-        Counter counter = registry.find(name).counter();
-        return counter != null ? (long) counter.count() : 0;
+        double total = 0;
+        for (var entry : counters.entrySet()) {
+            if (entry.getKey().name().equals(name)) {
+                total += entry.getValue().count();
+            }
+        }
+        return (long) total;
+    }
+
+    /// Returns the totals of a counter grouped by the value of its `tagKey` tag; series without it are left out.
+    public Map<String, Double> getCounterValuesByTag(String name, String tagKey) {
+        Map<String, Double> totals = new TreeMap<>();
+        for (var entry : counters.entrySet()) {
+            String value = entry.getKey().tags().get(tagKey);
+            if (entry.getKey().name().equals(name) && value != null) {
+                totals.merge(value, entry.getValue().count(), Double::sum);
+            }
+        }
+        return totals;
+    }
+
+    /// Returns the byte counters of the running scenario, or untagged ones outside of iterations.
+    ///
+    /// Transports that receive on their own threads resolve these once per connection.
+    public DataCounters dataCounters() {
+        ExecutionContext ctx = ExecutionContext.get();
+        if (ctx == null || ctx.scenario() == null) {
+            return unscopedData;
+        }
+        DataCounters data = dataByScenario.get(ctx.scenario());
+        if (data == null) {
+            data = dataByScenario.computeIfAbsent(ctx.scenario(), scenario -> {
+                TagSet tags = TagSet.EMPTY.with("scenario", scenario);
+                return new DataCounters(counter("data_sent", tags), counter("data_received", tags));
+            });
+        }
+        return data;
+    }
+
+    /// Returns the per-interval aggregates of a metric across its tag sets.
+    ///
+    /// Counters report their increments as `sum`, Rates their non-zero samples as `sum`
+    /// out of `count`, Gauges their `max` and the `last` value set on any tag set, and Trends
+    /// also carry a histogram.
+    public List<MetricTimeSeries.IntervalData> getTimeSeries(String name) {
+        MetricTimeSeries series = timeSeries.get(name);
+        return series != null ? series.snapshot() : List.of();
+    }
+
+    /// Returns the per-interval aggregates of one tag set of a metric listed in
+    /// [#configureTimeSeriesByTags(Collection)]; empty for other metrics.
+    public List<MetricTimeSeries.IntervalData> getTimeSeries(String name, Map<String, String> tags) {
+        MetricTimeSeries series = taggedTimeSeries.get(MetricKey.of(name, tags));
+        return series != null ? series.snapshot() : List.of();
+    }
+
+    /// Returns the names of all trends with at least one sample, in sorted order.
+    public SequencedCollection<String> getTrendNames() {
+        TreeSet<String> names = new TreeSet<>();
+        trends.forEach((key, trend) -> {
+            if (trend.count() > 0) {
+                names.add(key.name());
+            }
+        });
+        return names;
+    }
+
+    /// Returns all samples of a trend across its tag sets, or `null` if it has none.
+    public TrendHistogram getTrend(String name) {
+        return getTrend(name, Map.of());
+    }
+
+    /// Returns the samples of the trend series whose tags include `tagFilter`, or `null` if there are none.
+    public TrendHistogram getTrend(String name, Map<String, String> tagFilter) {
+        TrendHistogram merged = null;
+        for (var entry : trends.entrySet()) {
+            if (entry.getKey().matches(name, tagFilter) && entry.getValue().count() > 0) {
+                if (merged == null) {
+                    merged = new TrendHistogram(trendPrecision);
+                }
+                merged.add(entry.getValue());
+            }
+        }
+        return merged;
     }
 
     /// Calculates summary statistics for a trend.
@@ -199,16 +490,97 @@ public class MetricsCollector {
     /// @param name The metric name
     /// @return A summary containing min, max, avg, and percentiles
     public MetricSummary getTrendSummary(String name) {
-        DistributionSummary summary = registry.find(name).summary();
-        if (summary == null) return new MetricSummary(0, 0, 0, 0, 0, 0);
-
-        return new MetricSummary(
-                0, // Micrometer doesn't track absolute min easily without specialized histograms
-                summary.max(),
-                summary.mean(),
-                summary.count(),
-                summary.takeSnapshot().percentileValues().length > 0 ? summary.takeSnapshot().percentileValues()[0].value() : 0,
-                summary.takeSnapshot().percentileValues().length > 1 ? summary.takeSnapshot().percentileValues()[1].value() : 0
-        );
-    }
-}
\ No newline at end of file
+        TrendHistogram trend = getTrend(name);
+        if (trend == null) return new MetricSummary(0, 0, 0, 0, 0, 0, 0, 0);
+        return trend.summary();
+    }
+
+    /// Evaluates a single trend statistic such as `p(99.9)`; returns 0 for unknown trends.
+    public double getTrendStat(String name, String stat) {
+        TrendHistogram trend = getTrend(name);
+        return trend != null ? trend.stat(stat) : 0;
+    }
+
+    /// Returns the names of all rates with at least one sample, in sorted order.
+    public SequencedCollection<String> getRateNames() {
+        TreeSet<String> names = new TreeSet<>();
+        rates.forEach((key, rate) -> {
+            if (rate.total() > 0) {
+                names.add(key.name());
+            }
+        });
+        return names;
+    }
+
+    /// Returns all samples of a rate across its tag sets.
+    public RateMetric getRate(String name) {
+        return getRate(name, Map.of());
+    }
+
+    /// Returns the samples of the rate series whose tags include `tagFilter`.
+    public RateMetric getRate(String name, Map<String, String> tagFilter) {
+        RateMetric merged = new RateMetric();
+        rates.forEach((key, rate) -> {
+            if (key.matches(name, tagFilter)) {
+                merged.add(rate);
+            }
+        });
+        return merged;
+    }
+
+    /// Evaluates a threshold statistic against the live aggregates of a metric.
+    ///
+    /// Trends support `avg`, `min`, `med`, `max`, `count` and `p(N)`; Rates `rate`; Counters `count`
+    /// and `rate` (per second of `elapsed`); Gauges `value`.
+    ///
+    /// @param tagFilter Tags a series must carry to be included, as in k6's `metric{tag:value}`
+    /// @return the value, or empty if no matching series has samples yet
+    /// @throws IllegalArgumentException if the statistic does not apply to the metric's type
+    public OptionalDouble getMetricStat(String name, Map<String, String> tagFilter, String stat, Duration elapsed) {
+        TrendHistogram trend = trendView(name, tagFilter);
+        if (trend.count() > 0) {
+            return OptionalDouble.of(trend.stat(stat));
+        }
+
+        RateMetric rate = getRate(name, tagFilter);
+        if (rate.total() > 0) {
+            return switch (stat) {
+                case "rate" -> OptionalDouble.of(rate.rate());
+                case "count" -> OptionalDouble.of(rate.total());
+                default -> throw new IllegalArgumentException("Unsupported stat for rate " + name + ": " + stat);
+            };
+        }
+
+        boolean counted = false;
+        double count = 0;
+        for (var entry : counters.entrySet()) {
+            if (entry.getKey().matches(name, tagFilter)) {
+                counted = true;
+                count += entry.getValue().count();
+            }
+        }
+        if (counted && count > 0) {
+            return switch (stat) {
+                case "count" -> OptionalDouble.of(count);
+                case "rate" -> OptionalDouble.of(count / Math.max(0.001, elapsed.toMillis() / 1000.0));
+                default -> throw new IllegalArgumentException("Unsupported stat for counter " + name + ": " + stat);
+            };
+        }
+
+        boolean gauged = false;
+        double value = 0;
+        for (var entry : gauges.entrySet()) {
+            if (entry.getKey().matches(name, tagFilter)) {
+                gauged = true;
+                value += entry.getValue().value();
+            }
+        }
+        if (gauged) {
+            if (!stat.equals("value")) {
+                throw new IllegalArgumentException("Unsupported stat for gauge " + name + ": " + stat);
+            }
+            return OptionalDouble.of(value);
+        }
+        return OptionalDouble.empty();
+    }
+}
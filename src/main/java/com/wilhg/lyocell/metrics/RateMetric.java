@@ -0,0 +1,60 @@
+package com.wilhg.lyocell.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/// A k6 Rate: the fraction of non-zero samples, kept as a pair of adders.
+public class RateMetric {
+    private final LongAdder total = new LongAdder();
+    private final LongAdder passes = new LongAdder();
+    private final MetricTimeSeries series;
+
+    public RateMetric() {
+        this(null);
+    }
+
+    RateMetric(MetricTimeSeries series) {
+        this.series = series;
+    }
+
+    public void add(boolean value) {
+        MetricsBuffer buffer = MetricsBuffer.current();
+        if (buffer != null) {
+            buffer.record(this, value ? 1 : 0);
+            return;
+        }
+        total.increment();
+        if (value) {
+            passes.increment();
+        }
+        if (series != null) {
+            series.record(value ? 1 : 0);
+        }
+    }
+
+    void addBatch(int interval, MetricsBuffer.Pending batch) {
+        total.add(batch.count);
+        passes.add((long) batch.sum);
+        if (series != null) {
+            series.add(interval, batch.count, batch.sum, batch.max, batch.last, null);
+        }
+    }
+
+    /// Merges all samples of `other` into this rate.
+    public void add(RateMetric other) {
+        total.add(other.total());
+        passes.add(other.passes());
+    }
+
+    public long total() {
+        return total.sum();
+    }
+
+    public long passes() {
+        return passes.sum();
+    }
+
+    public double rate() {
+        long n = total();
+        return n > 0 ? (double) passes() / n : 0;
+    }
+}
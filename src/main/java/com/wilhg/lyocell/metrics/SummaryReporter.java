@@ -1,5 +1,10 @@
 package com.wilhg.lyocell.metrics;
 
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
 public class SummaryReporter {
     public void report(MetricsCollector collector) {
         System.out.println("\n" + "=".repeat(40));
@@ -12,6 +17,10 @@ public class SummaryReporter {
         long iterationsPassed = iterations - iterationsFailed;
         double iterationSuccessRate = iterations > 0 ? (double) iterationsPassed / iterations * 100 : 0;
         System.out.printf("  iterations................: %.2f%% (%d pass, %d fail)\n", iterationSuccessRate, iterationsPassed, iterationsFailed);
+        long droppedIterations = collector.getCounterValue("dropped_iterations");
+        if (droppedIterations > 0) {
+            System.out.printf("  dropped_iterations........: %d\n", droppedIterations);
+        }
 
         System.out.println("\n[Checks]");
         long pass = collector.getCounterValue("checks.pass");
@@ -20,19 +29,64 @@ public class SummaryReporter {
         double rate = total > 0 ? (double) pass / total * 100 : 0;
         System.out.printf("  checks....................: %.2f%% (%d pass, %d fail)\n", rate, pass, fail);
 
-        System.out.println("\n[Trends]");
-        var trendNames = collector.getRegistry().getMeters().stream()
-                .filter(m -> m.getId().getType() == io.micrometer.core.instrument.Meter.Type.DISTRIBUTION_SUMMARY)
-                .map(m -> m.getId().getName())
-                .collect(java.util.stream.Collectors.toCollection(java.util.LinkedHashSet::new));
+        // checks is already reported above
+        var rateNames = collector.getRateNames().stream().filter(name -> !name.equals("checks")).toList();
+        if (!rateNames.isEmpty()) {
+            System.out.println("\n[Rates]");
+            for (String name : rateNames) {
+                RateMetric r = collector.getRate(name);
+                System.out.printf("  %s: %.2f%% (%d of %d)\n", name, r.rate() * 100, r.passes(), r.total());
+            }
+        }
+
+        long sent = collector.getCounterValue("data_sent");
+        long received = collector.getCounterValue("data_received");
+        if (sent + received > 0) {
+            System.out.println("\n[Network]");
+            System.out.printf("  data_received.............: %s (%s/s)\n", formatBytes(received), formatBytes(perSecond(collector, "data_received", received)));
+            System.out.printf("  data_sent.................: %s (%s/s)\n", formatBytes(sent), formatBytes(perSecond(collector, "data_sent", sent)));
+            Map<String, Double> sentByScenario = collector.getCounterValuesByTag("data_sent", "scenario");
+            Map<String, Double> receivedByScenario = collector.getCounterValuesByTag("data_received", "scenario");
+            TreeSet<String> scenarios = new TreeSet<>(sentByScenario.keySet());
+            scenarios.addAll(receivedByScenario.keySet());
+            if (scenarios.size() > 1) {
+                for (String scenario : scenarios) {
+                    System.out.printf("    { scenario:%s }: received=%s sent=%s\n", scenario,
+                            formatBytes(receivedByScenario.getOrDefault(scenario, 0.0)), formatBytes(sentByScenario.getOrDefault(scenario, 0.0)));
+                }
+            }
+        }
 
-        for (String name : trendNames) {
-            MetricSummary summary = collector.getTrendSummary(name);
+        System.out.println("\n[Trends]");
+        for (String name : collector.getTrendNames()) {
+            TrendHistogram trend = collector.getTrend(name);
+            StringBuilder line = new StringBuilder("   ");
+            for (String stat : collector.getSummaryTrendStats()) {
+                line.append(String.format(" %s=%-10.2f", stat, trend.stat(stat)));
+            }
             System.out.printf("  %s:\n", name);
-            System.out.printf("    avg=%-10.2f max=%-10.2f p(95)=%-10.2f p(99)=%-10.2f count=%d\n",
-                    summary.avg(), summary.max(), summary.p95(), summary.p99(), summary.count());
+            System.out.printf("%s count=%d\n", line, trend.count());
         }
         
         System.out.println("=".repeat(40) + "\n");
     }
+
+    /// Average per second over the span of the counter's time series.
+    private static double perSecond(MetricsCollector collector, String counter, double total) {
+        List<MetricTimeSeries.IntervalData> series = collector.getTimeSeries(counter);
+        if (series.isEmpty()) return 0;
+        long spanMillis = series.getLast().timestamp() - series.getFirst().timestamp() + collector.getTimeSeriesResolution().toMillis();
+        return total * 1000 / spanMillis;
+    }
+
+    /// Formats a byte count with decimal units, e.g. `1.5 MB`.
+    public static String formatBytes(double bytes) {
+        String[] units = {"B", "kB", "MB", "GB", "TB"};
+        int unit = 0;
+        while (bytes >= 1000 && unit < units.length - 1) {
+            bytes /= 1000;
+            unit++;
+        }
+        return String.format(Locale.US, unit == 0 ? "%.0f %s" : "%.1f %s", bytes, units[unit]);
+    }
 }
\ No newline at end of file
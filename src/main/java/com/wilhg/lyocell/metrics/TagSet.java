@@ -0,0 +1,116 @@
+package com.wilhg.lyocell.metrics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/// An immutable set of metric tags, sorted by key with a precomputed hash.
+///
+/// Used as part of series keys, so equal tag combinations resolve to the same series
+/// without building or hashing a map on every sample.
+public final class TagSet {
+    public static final TagSet EMPTY = new TagSet(new String[0], new String[0]);
+    /// Tags of the series that collects samples beyond a metric's cardinality cap.
+    public static final TagSet OVERFLOW = of(Map.of("overflow", "true"));
+
+    private final String[] keys;
+    private final String[] values;
+    private final int hash;
+    private Map<String, String> map;
+
+    private TagSet(String[] keys, String[] values) {
+        this.keys = keys;
+        this.values = values;
+        this.hash = 31 * Arrays.hashCode(keys) + Arrays.hashCode(values);
+    }
+
+    public static TagSet of(Map<String, String> tags) {
+        if (tags == null || tags.isEmpty()) return EMPTY;
+        String[] keys = tags.keySet().toArray(String[]::new);
+        Arrays.sort(keys);
+        String[] values = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = tags.get(keys[i]);
+        }
+        return new TagSet(keys, values);
+    }
+
+    /// Returns a tag set with `key` set to `value`.
+    public TagSet with(String key, String value) {
+        int index = Arrays.binarySearch(keys, key);
+        if (index >= 0) {
+            if (values[index].equals(value)) return this;
+            String[] newValues = values.clone();
+            newValues[index] = value;
+            return new TagSet(keys, newValues);
+        }
+        int insert = -index - 1;
+        String[] newKeys = new String[keys.length + 1];
+        String[] newValues = new String[keys.length + 1];
+        System.arraycopy(keys, 0, newKeys, 0, insert);
+        System.arraycopy(values, 0, newValues, 0, insert);
+        newKeys[insert] = key;
+        newValues[insert] = value;
+        System.arraycopy(keys, insert, newKeys, insert + 1, keys.length - insert);
+        System.arraycopy(values, insert, newValues, insert + 1, keys.length - insert);
+        return new TagSet(newKeys, newValues);
+    }
+
+    public String get(String key) {
+        int index = Arrays.binarySearch(keys, key);
+        return index >= 0 ? values[index] : null;
+    }
+
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    /// Whether every entry of `filter` is present in this set (k6 sub-metric matching).
+    public boolean containsAll(Map<String, String> filter) {
+        for (Map.Entry<String, String> entry : filter.entrySet()) {
+            if (!entry.getValue().equals(get(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void forEach(BiConsumer<String, String> action) {
+        for (int i = 0; i < keys.length; i++) {
+            action.accept(keys[i], values[i]);
+        }
+    }
+
+    /// Returns the tags as an unmodifiable map, created on first use.
+    public Map<String, String> asMap() {
+        Map<String, String> result = map;
+        if (result == null) {
+            Map<String, String> built = new LinkedHashMap<>();
+            forEach(built::put);
+            map = result = Collections.unmodifiableMap(built);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof TagSet other && hash == other.hash
+                && Arrays.equals(keys, other.keys) && Arrays.equals(values, other.values));
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return asMap().toString();
+    }
+}
@@ -0,0 +1,104 @@
+package com.wilhg.lyocell.metrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/// One k6 threshold expression such as `p(95)<500` on `http_req_duration{status:200}`.
+///
+/// @param metric The metric name without the tag filter
+/// @param tagFilter Tags a series must carry to count towards the threshold
+/// @param stat The aggregation, e.g. `avg` or `p(99.9)`
+/// @param operator One of `<`, `<=`, `>`, `>=`, `==`, `===`, `!=`
+/// @param limit The right-hand side of the expression
+/// @param abortOnFail Whether a failure stops the test while it is running
+/// @param delayAbortEval How long after the start failures are not yet allowed to abort
+/// @param source The metric and expression as written, for messages
+public record Threshold(
+        String metric,
+        Map<String, String> tagFilter,
+        String stat,
+        String operator,
+        double limit,
+        boolean abortOnFail,
+        Duration delayAbortEval,
+        String source
+) {
+    private static final Pattern EXPRESSION = Pattern.compile(
+            "\\s*(avg|min|med|max|count|rate|value|p\\(\\d+(?:\\.\\d+)?\\))\\s*(<=|>=|===|==|!=|<|>)\\s*(-?[0-9.]+(?:[eE][-+]?\\d+)?)\\s*");
+    private static final Pattern METRIC = Pattern.compile("\\s*([^{\\s]+)\\s*(?:\\{(.*)\\})?\\s*");
+
+    /// Parses k6's `options.thresholds`.
+    ///
+    /// Each entry maps a metric (optionally `name{tag:value,...}`) to a list of expressions or
+    /// `{ threshold, abortOnFail, delayAbortEval }` objects.
+    ///
+    /// @throws IllegalArgumentException if an expression cannot be parsed
+    public static List<Threshold> parse(Map<String, Object> thresholds, Function<Object, Duration> durationParser) {
+        List<Threshold> result = new ArrayList<>();
+        if (thresholds == null) return result;
+
+        for (Map.Entry<String, Object> entry : thresholds.entrySet()) {
+            Matcher metricMatcher = METRIC.matcher(entry.getKey());
+            if (!metricMatcher.matches()) {
+                throw new IllegalArgumentException("Invalid threshold metric: " + entry.getKey());
+            }
+            String metric = metricMatcher.group(1);
+            Map<String, String> tagFilter = parseTags(metricMatcher.group(2));
+
+            List<?> rules = entry.getValue() instanceof List<?> list ? list : List.of(entry.getValue());
+            for (Object rule : rules) {
+                String expression;
+                boolean abortOnFail = false;
+                Duration delay = Duration.ZERO;
+                if (rule instanceof Map<?, ?> map) {
+                    expression = String.valueOf(map.get("threshold"));
+                    abortOnFail = Boolean.TRUE.equals(map.get("abortOnFail"));
+                    if (map.get("delayAbortEval") != null) {
+                        delay = durationParser.apply(map.get("delayAbortEval"));
+                    }
+                } else {
+                    expression = String.valueOf(rule);
+                }
+
+                Matcher m = EXPRESSION.matcher(expression);
+                if (!m.matches()) {
+                    throw new IllegalArgumentException("Invalid threshold expression for " + entry.getKey() + ": " + expression);
+                }
+                result.add(new Threshold(metric, tagFilter, m.group(1), m.group(2), Double.parseDouble(m.group(3)),
+                        abortOnFail, delay, entry.getKey() + ": " + expression.trim()));
+            }
+        }
+        return result;
+    }
+
+    private static Map<String, String> parseTags(String tags) {
+        if (tags == null || tags.isBlank()) return Map.of();
+        Map<String, String> result = new LinkedHashMap<>();
+        for (String pair : tags.split(",")) {
+            int colon = pair.indexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Invalid threshold tag filter: " + tags);
+            }
+            result.put(pair.substring(0, colon).trim(), pair.substring(colon + 1).trim());
+        }
+        return Map.copyOf(result);
+    }
+
+    /// Whether `actual` satisfies the expression.
+    public boolean test(double actual) {
+        return switch (operator) {
+            case "<" -> actual < limit;
+            case "<=" -> actual <= limit;
+            case ">" -> actual > limit;
+            case ">=" -> actual >= limit;
+            case "==", "===" -> actual == limit;
+            default -> actual != limit;
+        };
+    }
+}
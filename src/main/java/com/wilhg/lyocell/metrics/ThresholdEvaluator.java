@@ -0,0 +1,131 @@
+package com.wilhg.lyocell.metrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/// Evaluates [Threshold]s against the live aggregates of a [MetricsCollector].
+///
+/// While the test runs, [#start(Duration)] re-evaluates every threshold on a background tick;
+/// the first failing `abortOnFail` threshold past its `delayAbortEval` triggers the abort callback
+/// once. [#evaluate()] gives the final verdict after the run.
+///
+/// A threshold whose stat does not apply to its metric (e.g. `rate` on a Trend) is reported as
+/// failed with its error and no longer evaluated; the other thresholds keep being checked.
+public class ThresholdEvaluator implements AutoCloseable {
+    /// k6 evaluates thresholds every two seconds.
+    public static final Duration DEFAULT_INTERVAL = Duration.ofSeconds(2);
+
+    private final List<Threshold> thresholds;
+    private final MetricsCollector collector;
+    private final Runnable onAbort;
+    private final AtomicBoolean aborted = new AtomicBoolean(false);
+    private final Map<Threshold, String> errors = new ConcurrentHashMap<>();
+    private volatile long startNanos = System.nanoTime();
+    private ScheduledExecutorService ticker;
+
+    /// A threshold that did not hold, with the value that broke it, or one that could not be evaluated.
+    ///
+    /// @param error Why the threshold could not be evaluated, or `null` if `actual` broke it
+    public record Failure(Threshold threshold, double actual, String error) {
+        public Failure(Threshold threshold, double actual) {
+            this(threshold, actual, null);
+        }
+
+        @Override
+        public String toString() {
+            if (error != null) {
+                return threshold.source() + " (" + error + ")";
+            }
+            return threshold.source() + " (" + threshold.stat() + "=" + actual + ")";
+        }
+    }
+
+    public ThresholdEvaluator(List<Threshold> thresholds, MetricsCollector collector, Runnable onAbort) {
+        this.thresholds = List.copyOf(thresholds);
+        this.collector = collector;
+        this.onAbort = onAbort;
+        // Trend views merge samples as they are recorded, so each tick reads them without re-merging series
+        for (Threshold threshold : this.thresholds) {
+            collector.trendView(threshold.metric(), threshold.tagFilter());
+        }
+    }
+
+    /// Starts the background tick; does nothing if no threshold can abort the test.
+    public void start(Duration interval) {
+        startNanos = System.nanoTime();
+        if (thresholds.stream().noneMatch(Threshold::abortOnFail)) return;
+
+        ticker = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("lyocell-thresholds").factory());
+        ticker.scheduleAtFixedRate(this::tick, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void tick() {
+        Duration elapsed = elapsed();
+        try {
+            for (Failure failure : evaluate()) {
+                Threshold threshold = failure.threshold();
+                if (failure.error() == null && threshold.abortOnFail() && elapsed.compareTo(threshold.delayAbortEval()) >= 0
+                        && aborted.compareAndSet(false, true)) {
+                    System.err.println("Threshold crossed, aborting test: " + failure);
+                    onAbort.run();
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            // Keep ticking; the final evaluation reports the error
+            System.err.println("Threshold evaluation failed: " + e.getMessage());
+        }
+    }
+
+    /// Whether a threshold with `abortOnFail` stopped the test.
+    public boolean hasAborted() {
+        return aborted.get();
+    }
+
+    private Duration elapsed() {
+        return Duration.ofNanos(System.nanoTime() - startNanos);
+    }
+
+    /// Evaluates every threshold now. Metrics without samples do not fail.
+    public List<Failure> evaluate() {
+        Duration elapsed = elapsed();
+        List<Failure> failures = new ArrayList<>();
+        for (Threshold threshold : thresholds) {
+            String error = errors.get(threshold);
+            if (error != null) {
+                failures.add(new Failure(threshold, Double.NaN, error));
+                continue;
+            }
+            OptionalDouble actual;
+            try {
+                actual = collector.getMetricStat(threshold.metric(), threshold.tagFilter(), threshold.stat(), elapsed);
+            } catch (IllegalArgumentException e) {
+                // The stat does not fit the metric's type and never will; report it once and move on
+                if (errors.putIfAbsent(threshold, e.getMessage()) == null) {
+                    System.err.println("Threshold " + threshold.source() + " cannot be evaluated: " + e.getMessage());
+                }
+                failures.add(new Failure(threshold, Double.NaN, e.getMessage()));
+                continue;
+            }
+            if (actual.isPresent() && !threshold.test(actual.getAsDouble())) {
+                failures.add(new Failure(threshold, actual.getAsDouble()));
+            }
+        }
+        return failures;
+    }
+
+    @Override
+    public void close() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+}
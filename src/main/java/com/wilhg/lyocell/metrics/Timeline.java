@@ -0,0 +1,111 @@
+package com.wilhg.lyocell.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SequencedCollection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/// Success/failure counts per second of test time.
+///
+/// Counts live in primitive chunks of [#CHUNK_SECONDS] seconds that are allocated as the
+/// test advances, so memory grows with the test duration rather than with the number of
+/// events, and [#snapshot(long)] can be read while the test is still running.
+public class Timeline {
+    static final int CHUNK_SECONDS = 1024;
+    private static final long UNSET = Long.MIN_VALUE;
+
+    private final AtomicLong startSecond = new AtomicLong(UNSET);
+    private final AtomicLong lastSecond = new AtomicLong(UNSET);
+    // Each chunk interleaves [success, failure] per second
+    private volatile AtomicReferenceArray<AtomicLongArray> chunks = new AtomicReferenceArray<>(16);
+
+    /// Records one event at the current wall-clock time.
+    public void record(boolean success) {
+        record(System.currentTimeMillis(), success);
+    }
+
+    void record(long timestampMillis, boolean success) {
+        add(timestampMillis, success ? 1 : 0, success ? 0 : 1);
+    }
+
+    /// Adds a batch of events that all happened within the second of `timestampMillis`.
+    void add(long timestampMillis, long successes, long failures) {
+        long second = Math.floorDiv(timestampMillis, 1000);
+        long start = startSecond.get();
+        if (start == UNSET) {
+            startSecond.compareAndSet(UNSET, second);
+            start = startSecond.get();
+        }
+        // Threads racing the first event may be a few milliseconds behind it
+        int index = (int) Math.max(0, second - start);
+        lastSecond.accumulateAndGet(second, Math::max);
+
+        AtomicLongArray chunk = chunk(index / CHUNK_SECONDS);
+        int slot = (index % CHUNK_SECONDS) * 2;
+        if (successes > 0) {
+            chunk.addAndGet(slot, successes);
+        }
+        if (failures > 0) {
+            chunk.addAndGet(slot + 1, failures);
+        }
+    }
+
+    private AtomicLongArray chunk(int chunkIndex) {
+        AtomicReferenceArray<AtomicLongArray> current = chunks;
+        if (chunkIndex >= current.length()) {
+            current = grow(chunkIndex);
+        }
+        AtomicLongArray chunk = current.get(chunkIndex);
+        if (chunk == null) {
+            current.compareAndSet(chunkIndex, null, new AtomicLongArray(CHUNK_SECONDS * 2));
+            chunk = current.get(chunkIndex);
+        }
+        return chunk;
+    }
+
+    private synchronized AtomicReferenceArray<AtomicLongArray> grow(int chunkIndex) {
+        AtomicReferenceArray<AtomicLongArray> current = chunks;
+        if (chunkIndex < current.length()) {
+            return current;
+        }
+        AtomicReferenceArray<AtomicLongArray> grown = new AtomicReferenceArray<>(Math.max(chunkIndex + 1, current.length() * 2));
+        for (int i = 0; i < current.length(); i++) {
+            // Publish a chunk in the old directory too, so a racing writer still lands in the grown one
+            current.compareAndSet(i, null, new AtomicLongArray(CHUNK_SECONDS * 2));
+            grown.set(i, current.get(i));
+        }
+        chunks = grown;
+        return grown;
+    }
+
+    /// Returns the counts recorded so far, aggregated into buckets of `bucketDurationMillis`
+    /// (rounded to whole seconds, at least one). Seconds without events are reported as zero.
+    public SequencedCollection<TimeSeriesData> snapshot(long bucketDurationMillis) {
+        long start = startSecond.get();
+        if (start == UNSET) {
+            return List.of();
+        }
+        int seconds = (int) (lastSecond.get() - start) + 1;
+        int bucketSeconds = (int) Math.max(1, bucketDurationMillis / 1000);
+        AtomicReferenceArray<AtomicLongArray> current = chunks;
+
+        List<TimeSeriesData> result = new ArrayList<>(seconds / bucketSeconds + 1);
+        for (int bucketStart = 0; bucketStart < seconds; bucketStart += bucketSeconds) {
+            long successful = 0;
+            long failed = 0;
+            for (int index = bucketStart; index < Math.min(seconds, bucketStart + bucketSeconds); index++) {
+                int chunkIndex = index / CHUNK_SECONDS;
+                AtomicLongArray chunk = chunkIndex < current.length() ? current.get(chunkIndex) : null;
+                if (chunk != null) {
+                    int slot = (index % CHUNK_SECONDS) * 2;
+                    successful += chunk.get(slot);
+                    failed += chunk.get(slot + 1);
+                }
+            }
+            result.add(new TimeSeriesData((start + bucketStart) * 1000, successful, failed));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,189 @@
+package com.wilhg.lyocell.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.ConcurrentHistogram;
+
+/// A k6 Trend backed by a high-dynamic-range histogram.
+///
+/// Samples are recorded with microsecond resolution (values are in milliseconds),
+/// so any percentile can be read back at the configured precision without keeping
+/// raw samples. `min`, `max`, `avg` and `count` are tracked exactly next to the histogram.
+public class TrendHistogram {
+    static final double SCALE = 1000.0;
+    private static final TrendHistogram[] NO_VIEWS = new TrendHistogram[0];
+
+    private volatile ConcurrentHistogram histogram;
+    private final LongAdder count = new LongAdder();
+    private final DoubleAdder sum = new DoubleAdder();
+    private final DoubleAccumulator min = new DoubleAccumulator(Math::min, Double.POSITIVE_INFINITY);
+    private final DoubleAccumulator max = new DoubleAccumulator(Math::max, Double.NEGATIVE_INFINITY);
+    private final MetricTimeSeries series;
+    private volatile TrendHistogram[] views = NO_VIEWS;
+
+    /// @param significantDigits Number of significant decimal digits kept by the histogram (1-5).
+    public TrendHistogram(int significantDigits) {
+        this(significantDigits, null);
+    }
+
+    TrendHistogram(int significantDigits, MetricTimeSeries series) {
+        this.histogram = new ConcurrentHistogram(significantDigits);
+        this.series = series;
+    }
+
+    /// Switches to a histogram with `significantDigits` precision if nothing was recorded yet.
+    /// Must not race with [#record(double)]; it is meant for configuration before the test starts.
+    void setPrecisionIfEmpty(int significantDigits) {
+        if (count() == 0 && histogram.getNumberOfSignificantValueDigits() != significantDigits) {
+            histogram = new ConcurrentHistogram(significantDigits);
+        }
+    }
+
+    /// Also records every later sample of this series into `view`, a merged histogram of several series.
+    synchronized void addView(TrendHistogram view) {
+        TrendHistogram[] current = views;
+        TrendHistogram[] next = Arrays.copyOf(current, current.length + 1);
+        next[current.length] = view;
+        views = next;
+    }
+
+    /// Converts a sample in milliseconds to histogram units.
+    static long scaled(double value) {
+        return Math.max(0, Math.round(value * SCALE));
+    }
+
+    int significantDigits() {
+        return histogram.getNumberOfSignificantValueDigits();
+    }
+
+    public void record(double value) {
+        MetricsBuffer buffer = MetricsBuffer.current();
+        if (buffer != null) {
+            buffer.record(this, value);
+            return;
+        }
+        recordUnbuffered(value);
+        for (TrendHistogram view : views) {
+            view.recordUnbuffered(value);
+        }
+    }
+
+    private void recordUnbuffered(double value) {
+        histogram.recordValue(scaled(value));
+        count.increment();
+        sum.add(value);
+        min.accumulate(value);
+        max.accumulate(value);
+        if (series != null) {
+            series.record(value);
+        }
+    }
+
+    void addBatch(int interval, MetricsBuffer.Pending batch) {
+        histogram.add(batch.histogram);
+        count.add(batch.count);
+        sum.add(batch.sum);
+        min.accumulate(batch.min);
+        max.accumulate(batch.max);
+        if (series != null) {
+            series.add(interval, batch.count, batch.sum, batch.max, batch.last, batch.histogram);
+        }
+        for (TrendHistogram view : views) {
+            view.addBatch(interval, batch);
+        }
+    }
+
+    /// Merges all samples of `other` into this trend.
+    public void add(TrendHistogram other) {
+        if (other.count() == 0) return;
+        histogram.add(other.histogram);
+        count.add(other.count());
+        sum.add(other.sum());
+        min.accumulate(other.min());
+        max.accumulate(other.max());
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public double sum() {
+        return sum.sum();
+    }
+
+    public double min() {
+        return count() > 0 ? min.get() : 0;
+    }
+
+    public double max() {
+        return count() > 0 ? max.get() : 0;
+    }
+
+    public double avg() {
+        long n = count();
+        return n > 0 ? sum() / n : 0;
+    }
+
+    /// Returns the value at the given percentile (0-100), clamped to the exact min/max.
+    public double percentile(double percentile) {
+        if (count() == 0) return 0;
+        double value = histogram.getValueAtPercentile(percentile) / SCALE;
+        return Math.min(max(), Math.max(min(), value));
+    }
+
+    /// Evaluates a k6 trend statistic such as `avg`, `min`, `med`, `max`, `count` or `p(99.9)`.
+    ///
+    /// @throws IllegalArgumentException if the statistic is not known
+    public double stat(String stat) {
+        return switch (stat) {
+            case "avg" -> avg();
+            case "min" -> min();
+            case "med" -> percentile(50);
+            case "max" -> max();
+            case "count" -> count();
+            case "sum" -> sum();
+            default -> {
+                double percentile = parsePercentile(stat);
+                if (percentile >= 0) {
+                    yield percentile(percentile);
+                }
+                throw new IllegalArgumentException("Unknown trend stat: " + stat);
+            }
+        };
+    }
+
+    /// Whether {@link #stat} can evaluate `stat`.
+    public static boolean isValidStat(String stat) {
+        return switch (stat) {
+            case "avg", "min", "med", "max", "count", "sum" -> true;
+            default -> parsePercentile(stat) >= 0;
+        };
+    }
+
+    /// Returns the percentile of a `p(N)` stat with N in 0-100, or -1 if `stat` is not one.
+    private static double parsePercentile(String stat) {
+        if (!stat.startsWith("p(") || !stat.endsWith(")")) return -1;
+        try {
+            double percentile = Double.parseDouble(stat.substring(2, stat.length() - 1));
+            return percentile >= 0 && percentile <= 100 ? percentile : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public MetricSummary summary() {
+        return new MetricSummary(
+                min(),
+                max(),
+                avg(),
+                count(),
+                percentile(50),
+                percentile(90),
+                percentile(95),
+                percentile(99)
+        );
+    }
+}
@@ -6,17 +6,27 @@ import org.graalvm.polyglot.Value;
 
 import com.wilhg.lyocell.engine.ExecutionContext;
 import com.wilhg.lyocell.engine.JsEngine;
+import com.wilhg.lyocell.metrics.CounterMetric;
 import com.wilhg.lyocell.metrics.MetricsCollector;
+import com.wilhg.lyocell.metrics.RateMetric;
 
 public class CoreModule implements LyocellModule {
-    private MetricsCollector collector;
+    private CounterMetric checksPass;
+    private CounterMetric checksFail;
+    private RateMetric checks;
     private JsEngine jsEngine;
 
     public CoreModule() {
     }
 
     public CoreModule(MetricsCollector collector) {
-        this.collector = collector;
+        resolveMetrics(collector);
+    }
+
+    private void resolveMetrics(MetricsCollector collector) {
+        this.checksPass = collector.counter("checks.pass");
+        this.checksFail = collector.counter("checks.fail");
+        this.checks = collector.rate("checks");
     }
 
     @Override
@@ -39,7 +49,7 @@ public class CoreModule implements LyocellModule {
 
     @Override
     public void install(Context context, ModuleContext moduleContext) {
-        this.collector = moduleContext.metricsCollector();
+        resolveMetrics(moduleContext.metricsCollector());
         this.jsEngine = moduleContext.jsEngine();
         context.getBindings("js").putMember("LyocellCore", this);
     }
@@ -86,10 +96,11 @@ public class CoreModule implements LyocellModule {
             }
         }
 
+        checks.add(allPass);
         if (allPass) {
-            collector.addCounter("checks.pass", 1);
+            checksPass.increment();
         } else {
-            collector.addCounter("checks.fail", 1);
+            checksFail.increment();
             ExecutionContext ctx = ExecutionContext.get();
             if (ctx != null) {
                 ctx.markFailed();
@@ -4,6 +4,7 @@ import com.google.protobuf.DescriptorProtos;
 import com.google.protobuf.Descriptors;
 import com.google.protobuf.DynamicMessage;
 import com.google.protobuf.util.JsonFormat;
+import com.wilhg.lyocell.metrics.MetricsCollector;
 import io.grpc.*;
 import io.grpc.stub.ClientCalls;
 import org.graalvm.polyglot.Context;
@@ -20,6 +21,7 @@ import java.util.concurrent.TimeUnit;
 public class GrpcModule implements LyocellModule {
     private final Map<String, ManagedChannel> channels = new ConcurrentHashMap<>();
     private Context context;
+    private MetricsCollector metricsCollector;
 
     @Override
     public String getName() {
@@ -54,6 +56,7 @@ public class GrpcModule implements LyocellModule {
     @Override
     public void install(Context context, ModuleContext moduleContext) {
         this.context = context;
+        this.metricsCollector = moduleContext.metricsCollector();
         context.getBindings("js").putMember("LyocellGrpc", this);
     }
 
@@ -94,11 +97,43 @@ public class GrpcModule implements LyocellModule {
         if (plaintext) {
             builder.usePlaintext();
         }
+        if (metricsCollector != null) {
+            builder.intercept(countBytes(metricsCollector.dataCounters()));
+        }
 
         ManagedChannel channel = builder.build();
         channels.put(id, channel);
     }
 
+    /**
+     * Counts the wire size of every message on the channel, as reported by gRPC's stream tracers
+     * (after compression, including the message framing).
+     */
+    private static ClientInterceptor countBytes(MetricsCollector.DataCounters data) {
+        ClientStreamTracer.Factory tracerFactory = new ClientStreamTracer.Factory() {
+            @Override
+            public ClientStreamTracer newClientStreamTracer(ClientStreamTracer.StreamInfo info, Metadata headers) {
+                return new ClientStreamTracer() {
+                    @Override
+                    public void outboundWireSize(long bytes) {
+                        data.sent().increment(bytes);
+                    }
+
+                    @Override
+                    public void inboundWireSize(long bytes) {
+                        data.received().increment(bytes);
+                    }
+                };
+            }
+        };
+        return new ClientInterceptor() {
+            @Override
+            public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+                return next.newCall(method, callOptions.withStreamTracerFactory(tracerFactory));
+            }
+        };
+    }
+
     @HostAccess.Export
     public Object invoke(String id, String method, Value data, Value params) {
         ManagedChannel channel = channels.get(id);
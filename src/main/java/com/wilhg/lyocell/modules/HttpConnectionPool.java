@@ -0,0 +1,260 @@
+package com.wilhg.lyocell.modules;
+
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+import com.wilhg.lyocell.engine.ExecutionContext;
+import com.wilhg.lyocell.metrics.MetricsCollector;
+
+/**
+ * Decides which {@link HttpClient}, and so which connections, a request goes out on.
+ * <p>
+ * Every {@link HttpClient} owns a selector thread and its own keep-alive pool, so the scope
+ * is the unit of connection reuse:
+ * <ul>
+ *   <li>{@link Scope#VU}: each VU owns its clients, like k6. With {@code reuseAcrossIterations}
+ *       off (k6's {@code noVUConnectionReuse}) they are closed whenever a new iteration starts.</li>
+ *   <li>{@link Scope#SHARED}: one set of clients for the whole test, so keep-alive connections are
+ *       reused across VUs and only a handful of selector threads run. Cookies stay per VU; the
+ *       module applies them to each request itself, which means cookies set on intermediate
+ *       redirect responses are not kept.</li>
+ *   <li>{@link Scope#NONE}: a fresh client per request (k6's {@code noConnectionReuse}), so every
+ *       request opens its own connection.</li>
+ * </ul>
+ * The JDK client has no per-host connection limit, so {@code maxConnectionsPerHost} caps the
+ * requests in flight per host instead, which is the same for HTTP/1.1 and limits streams for
+ * HTTP/2. The cap applies where the connections live: per VU for {@link Scope#VU}, per test
+ * otherwise. Time spent waiting for a slot counts as {@code http_req_blocked}.
+ */
+public final class HttpConnectionPool implements AutoCloseable {
+    public enum Scope {
+        VU, SHARED, NONE;
+
+        public static Scope parse(String value) {
+            return switch (value.toLowerCase(Locale.ROOT)) {
+                case "vu" -> VU;
+                case "shared", "test" -> SHARED;
+                case "none" -> NONE;
+                default -> throw new IllegalArgumentException("Unknown HTTP connection scope: " + value);
+            };
+        }
+    }
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+
+    private record ClientKey(boolean insecure, boolean followRedirects) {}
+
+    private final Scope scope;
+    private final boolean reuseAcrossIterations;
+    private final int maxConnectionsPerHost;
+    private final Map<ClientKey, HttpClient> sharedClients = new ConcurrentHashMap<>();
+    private final Map<String, Semaphore> sharedSlots = new ConcurrentHashMap<>();
+
+    private final AtomicInteger openClients = new AtomicInteger();
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final AtomicInteger waitingRequests = new AtomicInteger();
+    private final PoolGauge clientsGauge;
+    private final PoolGauge activeGauge;
+    private final PoolGauge waitingGauge;
+
+    /**
+     * @param maxConnectionsPerHost Requests in flight per host; {@code 0} for no cap.
+     * @param metricsCollector      Receives the {@code http_pool_clients} gauge, plus {@code http_pool_active}
+     *                              and {@code http_pool_waiting} when requests are capped; may be {@code null}.
+     */
+    public HttpConnectionPool(Scope scope, boolean reuseAcrossIterations, int maxConnectionsPerHost, MetricsCollector metricsCollector) {
+        if (maxConnectionsPerHost < 0) {
+            throw new IllegalArgumentException("maxConnectionsPerHost must not be negative");
+        }
+        this.scope = scope;
+        this.reuseAcrossIterations = reuseAcrossIterations;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.clientsGauge = new PoolGauge(metricsCollector, "http_pool_clients");
+        this.activeGauge = new PoolGauge(metricsCollector, "http_pool_active");
+        this.waitingGauge = new PoolGauge(metricsCollector, "http_pool_waiting");
+    }
+
+    /**
+     * A per-VU pool with no cap, the behavior when no options are given.
+     */
+    public static HttpConnectionPool perVu(MetricsCollector metricsCollector) {
+        return new HttpConnectionPool(Scope.VU, true, 0, metricsCollector);
+    }
+
+    public Scope scope() {
+        return scope;
+    }
+
+    /**
+     * Opens the view of one VU, which holds its clients in {@link Scope#VU} and its cookies in every scope.
+     */
+    Connections connections(CookieManager cookies) {
+        return new Connections(cookies);
+    }
+
+    @Override
+    public void close() {
+        sharedClients.values().forEach(this::closeClient);
+        sharedClients.clear();
+    }
+
+    private HttpClient newClient(ClientKey key, CookieManager cookies) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .connectTimeout(CONNECT_TIMEOUT)
+                .followRedirects(key.followRedirects() ? HttpClient.Redirect.NORMAL : HttpClient.Redirect.NEVER);
+        if (cookies != null) {
+            builder.cookieHandler(cookies);
+        }
+        if (key.insecure()) {
+            try {
+                SSLContext sslContext = SSLContext.getInstance("TLS");
+                sslContext.init(null, new TrustManager[]{new X509TrustManager() {
+                    public X509Certificate[] getAcceptedIssuers() { return null; }
+                    public void checkClientTrusted(X509Certificate[] certs, String authType) {}
+                    public void checkServerTrusted(X509Certificate[] certs, String authType) {}
+                }}, new java.security.SecureRandom());
+                builder.sslContext(sslContext);
+            } catch (Exception e) {
+                // Fallback to default
+            }
+        }
+        HttpClient client = builder.build();
+        clientsGauge.set(openClients.incrementAndGet());
+        return client;
+    }
+
+    private void closeClient(HttpClient client) {
+        client.close();
+        clientsGauge.set(openClients.decrementAndGet());
+    }
+
+    private static String hostOf(URI uri) {
+        return uri.getScheme() + "://" + uri.getRawAuthority();
+    }
+
+    /**
+     * The connections of one VU. Safe to use from the VU's {@code http.batch} forks.
+     */
+    final class Connections implements AutoCloseable {
+        private final CookieManager cookies;
+        private final Map<ClientKey, HttpClient> clients = new ConcurrentHashMap<>();
+        private final Map<String, Semaphore> slots = new ConcurrentHashMap<>();
+        private volatile ExecutionContext iteration;
+
+        private Connections(CookieManager cookies) {
+            this.cookies = cookies;
+        }
+
+        /**
+         * Picks the client for a request to {@code uri}, first waiting for a free slot on its host.
+         * The lease must be closed once the response was read.
+         */
+        Lease acquire(URI uri, boolean insecure, boolean followRedirects) throws InterruptedException {
+            ClientKey key = new ClientKey(insecure, followRedirects);
+            Semaphore slot = maxConnectionsPerHost > 0 ? acquireSlot(hostOf(uri)) : null;
+            try {
+                return switch (scope) {
+                    case VU -> new Lease(vuClient(key), true, false, slot);
+                    case SHARED -> new Lease(sharedClients.computeIfAbsent(key, k -> newClient(k, null)), false, false, slot);
+                    case NONE -> new Lease(newClient(key, cookies), true, true, slot);
+                };
+            } catch (RuntimeException e) {
+                if (slot != null) {
+                    releaseSlot(slot);
+                }
+                throw e;
+            }
+        }
+
+        private HttpClient vuClient(ClientKey key) {
+            if (!reuseAcrossIterations) {
+                ExecutionContext current = ExecutionContext.get();
+                if (current != null && current != iteration) {
+                    iteration = current;
+                    closeClients();
+                }
+            }
+            return clients.computeIfAbsent(key, k -> newClient(k, cookies));
+        }
+
+        private Semaphore acquireSlot(String host) throws InterruptedException {
+            Map<String, Semaphore> owner = scope == Scope.VU ? slots : sharedSlots;
+            Semaphore slot = owner.computeIfAbsent(host, h -> new Semaphore(maxConnectionsPerHost, true));
+            if (!slot.tryAcquire()) {
+                waitingGauge.set(waitingRequests.incrementAndGet());
+                try {
+                    slot.acquire();
+                } finally {
+                    waitingGauge.set(waitingRequests.decrementAndGet());
+                }
+            }
+            activeGauge.set(activeRequests.incrementAndGet());
+            return slot;
+        }
+
+        private void releaseSlot(Semaphore slot) {
+            activeGauge.set(activeRequests.decrementAndGet());
+            slot.release();
+        }
+
+        private void closeClients() {
+            clients.values().forEach(HttpConnectionPool.this::closeClient);
+            clients.clear();
+        }
+
+        @Override
+        public void close() {
+            closeClients();
+        }
+
+        /**
+         * A client checked out for one request.
+         */
+        final class Lease implements AutoCloseable {
+            private final HttpClient client;
+            private final boolean handlesCookies;
+            private final boolean disposable;
+            private final Semaphore slot;
+
+            private Lease(HttpClient client, boolean handlesCookies, boolean disposable, Semaphore slot) {
+                this.client = client;
+                this.handlesCookies = handlesCookies;
+                this.disposable = disposable;
+                this.slot = slot;
+            }
+
+            HttpClient client() {
+                return client;
+            }
+
+            /**
+             * Whether the client applies the VU's cookies itself; otherwise the caller must.
+             */
+            boolean handlesCookies() {
+                return handlesCookies;
+            }
+
+            @Override
+            public void close() {
+                if (disposable) {
+                    closeClient(client);
+                }
+                if (slot != null) {
+                    releaseSlot(slot);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.wilhg.lyocell.modules;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.net.ssl.SSLSession;
+
+/**
+ * Sends the requests of {@link HttpModule}.
+ * <p>
+ * One engine serves a whole test and is chosen with {@code options.lyocell.httpEngine}. Each VU
+ * talks to it through its own {@link Session}, which holds the VU's cookies and, where the
+ * engine keeps them per VU, its connections. Engines report progress to the request's
+ * {@link HttpPhaseProbe}, from which the module derives timings and transferred bytes.
+ */
+public interface HttpEngine extends AutoCloseable {
+    enum Kind {
+        JDK, NETTY;
+
+        public static Kind parse(String value) {
+            return switch (value.toLowerCase(Locale.ROOT)) {
+                case "jdk" -> JDK;
+                case "netty" -> NETTY;
+                default -> throw new IllegalArgumentException("Unknown HTTP engine: " + value);
+            };
+        }
+    }
+
+    /**
+     * How the response body is handed to the script, k6's {@code responseType}.
+     */
+    enum ResponseType {
+        /** Decoded with the charset of the {@code Content-Type}, UTF-8 by default. */
+        TEXT,
+        /** Raw bytes, exposed as an {@code ArrayBuffer}. */
+        BINARY,
+        /** Drained as it arrives; only its size is recorded. */
+        NONE;
+
+        public static ResponseType parse(String value) {
+            return switch (value.toLowerCase(Locale.ROOT)) {
+                case "text" -> TEXT;
+                case "binary" -> BINARY;
+                case "none" -> NONE;
+                default -> throw new IllegalArgumentException("Unknown responseType: " + value);
+            };
+        }
+    }
+
+    /**
+     * Opens the engine for one VU.
+     */
+    Session open(CookieManager cookies);
+
+    @Override
+    void close();
+
+    interface Session extends AutoCloseable {
+        /**
+         * Sends {@code request} and reads the whole response, following redirects if asked to.
+         * Blocks the calling (virtual) thread.
+         */
+        Response send(Request request, HttpPhaseProbe probe) throws IOException, InterruptedException;
+
+        @Override
+        void close();
+    }
+
+    /**
+     * @param headers Request headers without {@code Host}, which the engine derives from the URI.
+     * @param body    The encoded body, or {@code null} for none.
+     * @param timeout How long to wait for the response, or {@code null} for the engine's default.
+     */
+    record Request(String method, URI uri, Map<String, List<String>> headers, byte[] body, Duration timeout,
+                   boolean insecure, boolean followRedirects, ResponseType responseType) {
+        long contentLength() {
+            return body != null ? body.length : 0;
+        }
+    }
+
+    /**
+     * @param protocol The HTTP version as the JDK names it, e.g. {@code HTTP_1_1} or {@code HTTP_2}.
+     * @param body     The raw body, or {@code null} when it was discarded ({@link ResponseType#NONE}).
+     * @param charset  The charset of the {@code Content-Type}, UTF-8 when it names none.
+     * @param uri      The URI the response came from, after redirects.
+     */
+    record Response(int status, String protocol, Map<String, List<String>> headers, byte[] body, Charset charset,
+                    Optional<SSLSession> sslSession, URI uri) {}
+}
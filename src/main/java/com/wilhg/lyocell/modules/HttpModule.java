@@ -1,82 +1,160 @@
 package com.wilhg.lyocell.modules;
 
+import java.io.IOException;
 import java.net.CookieManager;
 import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.security.cert.X509Certificate;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
-import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
-
 import org.graalvm.polyglot.Context;
 import org.graalvm.polyglot.HostAccess;
 import org.graalvm.polyglot.Value;
+import org.graalvm.polyglot.proxy.ProxyArray;
+import org.graalvm.polyglot.proxy.ProxyExecutable;
+import org.graalvm.polyglot.proxy.ProxyObject;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.select.Elements;
 
+import com.wilhg.lyocell.engine.ExecutionContext;
+import com.wilhg.lyocell.engine.JsEngine;
+import com.wilhg.lyocell.engine.TestEngine;
+import com.wilhg.lyocell.metrics.CounterMetric;
+import com.wilhg.lyocell.metrics.HttpTimings;
 import com.wilhg.lyocell.metrics.MetricsCollector;
+import com.wilhg.lyocell.metrics.TagSet;
+import com.wilhg.lyocell.metrics.TrendHistogram;
 
 public class HttpModule implements LyocellModule {
     private final CookieManager cookieManager = new CookieManager();
-    private final Map<String, HttpClient> clients = new ConcurrentHashMap<>();
-    
+
     private Context context;
     private MetricsCollector metricsCollector;
+    private TestEngine testEngine;
+    private JsEngine jsEngine;
+    // Bound on the first request, once the test's options have chosen the engine
+    private volatile HttpEngine.Session session;
+    // Only set when there is no test engine to share an engine with
+    private HttpEngine ownEngine;
+    // Metric handles per method, URL and user tags, so a request records without building tag sets
+    private final Map<RequestKey, RequestSeries> requestSeriesByKey = new ConcurrentHashMap<>();
+    // Beyond this many combinations (e.g. unnamed dynamic URLs) handles are resolved per request instead of cached
+    private static final int MAX_CACHED_TAG_SETS = 1000;
+
+    /** What decides a request's tags apart from its status; {@code userTags} is {@code params.tags} or {@code null}. */
+    private record RequestKey(String method, String url, Map<?, ?> userTags) {}
+
+    private record StatusMetrics(int status, RequestMetrics metrics) {}
+
+    private record RequestMetrics(TrendHistogram duration, CounterMetric reqs, TrendHistogram durationCorrected, TrendHistogram[] phases) {
+        static RequestMetrics resolve(MetricsCollector collector, TagSet tags) {
+            return new RequestMetrics(
+                    collector.trend("http_req_duration", tags),
+                    collector.counter("http_reqs", tags),
+                    collector.trend("http_req_duration_corrected", tags),
+                    HttpTimings.PHASE_METRICS.stream().map(name -> collector.trend(name, tags)).toArray(TrendHistogram[]::new));
+        }
+
+        void record(HttpTimings timings) {
+            duration.record(timings.duration());
+            reqs.increment();
+            double[] values = timings.phases();
+            for (int i = 0; i < values.length; i++) {
+                phases[i].record(values[i]);
+            }
+            ExecutionContext ctx = ExecutionContext.get();
+            if (ctx != null && ctx.isScheduled()) {
+                durationCorrected.record(timings.duration() + ctx.scheduleLagMillis());
+            }
+        }
+    }
+
+    /**
+     * The metric handles of one request tag combination. The {@code status} tag is added per
+     * response status on first use; a combination only ever sees a few, so they are scanned.
+     */
+    private final class RequestSeries {
+        private final TagSet tags;
+        private volatile StatusMetrics[] byStatus = new StatusMetrics[0];
+
+        RequestSeries(TagSet tags) {
+            this.tags = tags;
+        }
+
+        RequestMetrics forStatus(int status) {
+            for (StatusMetrics entry : byStatus) {
+                if (entry.status() == status) {
+                    return entry.metrics();
+                }
+            }
+            return resolve(status);
+        }
+
+        private synchronized RequestMetrics resolve(int status) {
+            StatusMetrics[] current = byStatus;
+            for (StatusMetrics entry : current) {
+                if (entry.status() == status) {
+                    return entry.metrics();
+                }
+            }
+            RequestMetrics metrics = RequestMetrics.resolve(metricsCollector, tags.with("status", String.valueOf(status)));
+            StatusMetrics[] next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = new StatusMetrics(status, metrics);
+            byStatus = next;
+            return metrics;
+        }
+    }
+
+    private RequestSeries requestSeries(String method, String url, Map<String, Object> params) {
+        Map<?, ?> userTags = params != null && params.get("tags") instanceof Map<?, ?> tags && !tags.isEmpty() ? tags : null;
+        RequestKey key = new RequestKey(method, url, userTags);
+        RequestSeries series = requestSeriesByKey.get(key);
+        if (series == null) {
+            series = requestSeriesByKey.size() < MAX_CACHED_TAG_SETS
+                    ? requestSeriesByKey.computeIfAbsent(key, _ -> new RequestSeries(requestTags(method, url, params)))
+                    : new RequestSeries(requestTags(method, url, params));
+        }
+        return series;
+    }
 
     public HttpModule() {
-        // Default client
-        clients.put("default", HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(10))
-                .followRedirects(HttpClient.Redirect.NORMAL)
-                .cookieHandler(cookieManager)
-                .build());
     }
 
     public HttpModule(MetricsCollector metricsCollector) {
-        this();
         this.metricsCollector = metricsCollector;
     }
 
-    private HttpClient getClient(boolean insecure, boolean followRedirects) {
-        String key = "insecure=" + insecure + "&redirects=" + followRedirects;
-        return clients.computeIfAbsent(key, k -> {
-            HttpClient.Builder builder = HttpClient.newBuilder()
-                    .connectTimeout(Duration.ofSeconds(10))
-                    .cookieHandler(cookieManager);
-
-            if (followRedirects) {
-                builder.followRedirects(HttpClient.Redirect.NORMAL);
-            } else {
-                builder.followRedirects(HttpClient.Redirect.NEVER);
-            }
-
-            if (insecure) {
-                try {
-                    SSLContext sslContext = SSLContext.getInstance("TLS");
-                    sslContext.init(null, new TrustManager[]{new X509TrustManager() {
-                        public X509Certificate[] getAcceptedIssuers() { return null; }
-                        public void checkClientTrusted(X509Certificate[] certs, String authType) {}
-                        public void checkServerTrusted(X509Certificate[] certs, String authType) {}
-                    }}, new java.security.SecureRandom());
-                    builder.sslContext(sslContext);
-                } catch (Exception e) {
-                    // Fallback to default
+    private HttpEngine.Session session() {
+        HttpEngine.Session current = session;
+        if (current == null) {
+            synchronized (this) {
+                current = session;
+                if (current == null) {
+                    HttpEngine engine;
+                    if (testEngine != null) {
+                        engine = testEngine.getHttpEngine();
+                    } else {
+                        ownEngine = new JdkHttpEngine(HttpConnectionPool.perVu(metricsCollector));
+                        engine = ownEngine;
+                    }
+                    current = engine.open(cookieManager);
+                    session = current;
                 }
             }
-            return builder.build();
-        });
+        }
+        return current;
     }
 
     @Override
@@ -94,9 +172,11 @@ public class HttpModule implements LyocellModule {
             export const patch = (url, body, params) => Http.patch(url, body, params);
             export const del = (url, body, params) => Http.del(url, body, params);
             export const batch = (requests) => Http.batch(requests);
+            export const asyncRequest = (method, url, body, params) => Http.asyncRequest(method, url, body, params);
+            export const prepare = (method, url, params) => Http.prepare(method, url, params);
             export const cookieJar = () => Http.cookieJar();
             export function CookieJar() { return Http.newCookieJar(); }
-            export default { get, post, put, patch, del, batch, cookieJar, CookieJar };
+            export default { get, post, put, patch, del, batch, asyncRequest, prepare, cookieJar, CookieJar };
             """;
     }
 
@@ -104,9 +184,23 @@ public class HttpModule implements LyocellModule {
     public void install(Context context, ModuleContext moduleContext) {
         this.context = context;
         this.metricsCollector = moduleContext.metricsCollector();
+        this.testEngine = moduleContext.testEngine();
+        this.jsEngine = moduleContext.jsEngine();
         context.getBindings("js").putMember("LyocellHttp", this);
     }
 
+    @Override
+    public synchronized void close() {
+        if (session != null) {
+            session.close();
+            session = null;
+        }
+        if (ownEngine != null) {
+            ownEngine.close();
+            ownEngine = null;
+        }
+    }
+
     @HostAccess.Export
     public CookieJarWrapper cookieJar() {
         return new CookieJarWrapper(cookieManager);
@@ -270,12 +364,96 @@ public class HttpModule implements LyocellModule {
         return request("DELETE", url, body, params != null ? extractParams(params) : null);
     }
 
-    private HttpResponseWrapper request(String method, String url, Object body, Map<String, Object> params) {
-        Instant start = Instant.now();
-        try {
-            HttpRequest.Builder builder = HttpRequest.newBuilder()
-                    .uri(URI.create(url));
+    /**
+     * k6's {@code http.asyncRequest}: sends the request on its own virtual thread and returns a
+     * Promise of the response, so one VU can have many requests in flight.
+     */
+    @HostAccess.Export
+    public Value asyncRequest(String method, String url, Value body, Value params) {
+        String upperMethod = method.toUpperCase(Locale.ROOT);
+        Object requestBody = body != null ? requestBody(body) : null;
+        Map<String, Object> requestParams = params != null ? extractParams(params) : null;
+        return jsEngine.promise(() -> request(upperMethod, url, requestBody, requestParams));
+    }
 
+    /**
+     * A body read on the VU thread, so it can be sent from another.
+     */
+    private Object requestBody(Value body) {
+        if (body.isNull()) return null;
+        return body.isString() ? body.asString() : deepExtract(body);
+    }
+
+    /**
+     * Builds a request template, for {@code http.prepare}: params are read, headers and auth
+     * encoded and the URL checked once, and the returned handle only fills in what changes per
+     * call. {@code url} may name path variables as {@code {name}}; they default the {@code name}
+     * tag to the template, so all calls share one series.
+     */
+    @HostAccess.Export
+    public PreparedRequest prepare(String method, String url, Value params) {
+        String upperMethod = method.toUpperCase(Locale.ROOT);
+        Map<String, Object> extracted = params != null ? extractParams(params) : null;
+        return new PreparedRequest(RequestSpec.of(upperMethod, url, true, extracted, defaultResponseType(),
+                requestSeries(upperMethod, url, extracted)));
+    }
+
+    /**
+     * A request prepared by {@link #prepare}. {@code send({ vars, body })} fills the URL's path
+     * variables from {@code vars} and sends {@code body}; both may be left out.
+     */
+    public class PreparedRequest {
+        private final RequestSpec spec;
+
+        PreparedRequest(RequestSpec spec) {
+            this.spec = spec;
+        }
+
+        @HostAccess.Export
+        public HttpResponseWrapper send(Value overrides) {
+            return HttpModule.this.send(spec, vars(overrides), body(overrides), new HttpPhaseProbe());
+        }
+
+        /**
+         * Like {@link #send}, returning a Promise of the response.
+         */
+        @HostAccess.Export
+        public Value sendAsync(Value overrides) {
+            String[] vars = vars(overrides);
+            Object body = body(overrides);
+            return jsEngine.promise(() -> HttpModule.this.send(spec, vars, body, new HttpPhaseProbe()));
+        }
+
+        private String[] vars(Value overrides) {
+            String[] vars = new String[spec.varCount()];
+            Value values = overrides != null && overrides.hasMembers() ? overrides.getMember("vars") : null;
+            for (int i = 0; i < vars.length; i++) {
+                Value value = values != null && values.hasMembers() ? values.getMember(spec.varName(i)) : null;
+                if (value == null || value.isNull()) {
+                    throw new IllegalArgumentException("Missing path variable: " + spec.varName(i));
+                }
+                vars[i] = value.isString() ? value.asString() : value.toString();
+            }
+            return vars;
+        }
+
+        private Object body(Value overrides) {
+            Value body = overrides != null && overrides.hasMembers() ? overrides.getMember("body") : null;
+            return body != null ? requestBody(body) : null;
+        }
+    }
+
+    /**
+     * What a request keeps from its params. {@code urlParts} alternates literal URL text and
+     * path variable names, and is only set when the URL has variables; otherwise {@code uri} is.
+     */
+    private record RequestSpec(String method, URI uri, String[] urlParts, Map<String, List<String>> headers,
+                               Duration timeout, boolean insecure, boolean followRedirects,
+                               HttpEngine.ResponseType responseType, RequestSeries series) {
+        static RequestSpec of(String method, String url, boolean templated, Map<String, Object> params,
+                              HttpEngine.ResponseType responseType, RequestSeries series) {
+            Map<String, List<String>> headers = new LinkedHashMap<>();
+            Duration timeout = null;
             boolean insecure = false;
             boolean followRedirects = true;
 
@@ -283,15 +461,15 @@ public class HttpModule implements LyocellModule {
                 // Set timeout
                 if (params.containsKey("timeout")) {
                     Object timeoutVal = params.get("timeout");
-                    Duration timeout = parseDuration(timeoutVal);
-                    if (!timeout.isZero()) {
-                        builder.timeout(timeout);
+                    Duration parsed = parseDuration(timeoutVal);
+                    if (!parsed.isZero()) {
+                        timeout = parsed;
                     }
                 }
 
                 // Set headers
-                if (params.get("headers") instanceof Map<?, ?> headers) {
-                    headers.forEach((k, v) -> builder.header(k.toString(), v.toString()));
+                if (params.get("headers") instanceof Map<?, ?> headersMap) {
+                    headersMap.forEach((k, v) -> headers.computeIfAbsent(k.toString(), _ -> new ArrayList<>()).add(v.toString()));
                 }
 
                 // Insecure TLS
@@ -304,6 +482,11 @@ public class HttpModule implements LyocellModule {
                     followRedirects = n.intValue() > 0;
                 }
 
+                // Body handling, overriding discardResponseBodies
+                if (params.get("responseType") instanceof String type) {
+                    responseType = HttpEngine.ResponseType.parse(type);
+                }
+
                 // Auth
                 if (params.get("auth") != null) {
                     Object auth = params.get("auth");
@@ -319,44 +502,149 @@ public class HttpModule implements LyocellModule {
                         }
                     }
                     if (authHeader != null) {
-                        builder.header("Authorization", authHeader);
+                        headers.computeIfAbsent("Authorization", _ -> new ArrayList<>()).add(authHeader);
                     }
                 }
             }
 
-            // Extract tags
-            Map<String, String> tags = new HashMap<>();
-            if (params != null && params.get("tags") instanceof Map<?, ?> tagsMap) {
-                tagsMap.forEach((k, v) -> tags.put(k.toString(), v.toString()));
+            headers.replaceAll((_, values) -> List.copyOf(values));
+            String[] urlParts = templated ? splitTemplate(url) : null;
+            URI uri;
+            if (urlParts == null || urlParts.length == 1) {
+                uri = URI.create(url);
+                urlParts = null;
+            } else {
+                // Checked with placeholder values, so a bad template fails here rather than per call
+                uri = null;
+                String[] sample = new String[urlParts.length / 2];
+                Arrays.fill(sample, "x");
+                URI.create(fill(urlParts, sample));
             }
+            return new RequestSpec(method, uri, urlParts, Collections.unmodifiableMap(headers), timeout,
+                    insecure, followRedirects, responseType, series);
+        }
+
+        int varCount() {
+            return urlParts != null ? urlParts.length / 2 : 0;
+        }
+
+        String varName(int index) {
+            return urlParts[2 * index + 1];
+        }
 
-            // Set method and body
-            HttpRequest.BodyPublisher bodyPublisher = HttpRequest.BodyPublishers.noBody();
-            if (body != null) {
-                bodyPublisher = HttpRequest.BodyPublishers.ofString(body.toString());
+        URI uri(String[] vars) {
+            if (uri != null) {
+                return uri;
             }
-            builder.method(method, bodyPublisher);
+            String[] encoded = new String[vars.length];
+            for (int i = 0; i < vars.length; i++) {
+                encoded[i] = URLEncoder.encode(vars[i], StandardCharsets.UTF_8).replace("+", "%20");
+            }
+            return URI.create(fill(urlParts, encoded));
+        }
 
-            HttpClient client = getClient(insecure, followRedirects);
-            HttpResponse<String> response = client.send(builder.build(), HttpResponse.BodyHandlers.ofString());
-            double duration = Duration.between(start, Instant.now()).toMillis();
-            
-            if (metricsCollector != null) {
-                metricsCollector.addTrend("http_req_duration", duration, tags);
-                metricsCollector.addCounter("http_reqs", 1, tags);
+        private static String[] splitTemplate(String url) {
+            List<String> parts = new ArrayList<>();
+            int from = 0;
+            int open;
+            while ((open = url.indexOf('{', from)) >= 0) {
+                int close = url.indexOf('}', open);
+                if (close < 0) {
+                    throw new IllegalArgumentException("Unclosed path variable in " + url);
+                }
+                parts.add(url.substring(from, open));
+                parts.add(url.substring(open + 1, close));
+                from = close + 1;
             }
+            parts.add(url.substring(from));
+            return parts.toArray(String[]::new);
+        }
+
+        private static String fill(String[] urlParts, String[] vars) {
+            StringBuilder url = new StringBuilder(urlParts[0]);
+            for (int i = 0; i < vars.length; i++) {
+                url.append(vars[i]).append(urlParts[2 * i + 2]);
+            }
+            return url.toString();
+        }
+    }
 
-            return new HttpResponseWrapper(response, duration, context);
+    private HttpEngine.ResponseType defaultResponseType() {
+        return testEngine != null && testEngine.isDiscardResponseBodies()
+                ? HttpEngine.ResponseType.NONE
+                : HttpEngine.ResponseType.TEXT;
+    }
+
+    private HttpResponseWrapper request(String method, String url, Object body, Map<String, Object> params) {
+        HttpPhaseProbe probe = new HttpPhaseProbe();
+        RequestSeries series = requestSeries(method, url, params);
+        RequestSpec spec;
+        try {
+            spec = RequestSpec.of(method, url, false, params, defaultResponseType(), series);
         } catch (Exception e) {
-            double duration = Duration.between(start, Instant.now()).toMillis();
+            return failed(series, null, probe, e);
+        }
+        return send(spec, null, body, probe);
+    }
+
+    private HttpResponseWrapper send(RequestSpec spec, String[] vars, Object body, HttpPhaseProbe probe) {
+        HttpEngine.Request httpRequest = null;
+        try {
+            byte[] bodyBytes = body != null ? body.toString().getBytes(StandardCharsets.UTF_8) : null;
+            httpRequest = new HttpEngine.Request(spec.method(), spec.uri(vars), spec.headers(), bodyBytes, spec.timeout(),
+                    spec.insecure(), spec.followRedirects(), spec.responseType());
+            HttpEngine.Response response = session().send(httpRequest, probe);
+            HttpTimings timings = probe.timings(response.sslSession());
+
             if (metricsCollector != null) {
-                metricsCollector.addTrend("http_req_duration", duration);
+                spec.series().forStatus(response.status()).record(timings);
+                MetricsCollector.DataCounters data = metricsCollector.dataCounters();
+                data.sent().increment(requestHeadSize(httpRequest, probe) + probe.bodyBytesSent());
+                data.received().increment(HttpWireSize.responseHead(response.headers()) + probe.bodyBytesReceived());
+            }
+
+            return new HttpResponseWrapper(response, httpRequest.responseType(), timings, context);
+        } catch (Exception e) {
+            return failed(spec.series(), httpRequest, probe, e);
+        }
+    }
+
+    private HttpResponseWrapper failed(RequestSeries series, HttpEngine.Request httpRequest, HttpPhaseProbe probe, Exception e) {
+        double duration = probe.elapsedMillis();
+        if (metricsCollector != null) {
+            // Counted in http_reqs with status 0, as k6 does for requests that got no response
+            RequestMetrics metrics = series.forStatus(0);
+            metrics.duration().record(duration);
+            metrics.reqs().increment();
+            if (httpRequest != null && probe.headWritten()) {
+                MetricsCollector.DataCounters data = metricsCollector.dataCounters();
+                data.sent().increment(requestHeadSize(httpRequest, probe) + probe.bodyBytesSent());
+                data.received().increment(probe.bodyBytesReceived());
             }
-            return new HttpResponseWrapper(e.getMessage(), duration, context);
         }
+        return new HttpResponseWrapper(e.getMessage(), duration, context);
+    }
+
+    private static long requestHeadSize(HttpEngine.Request request, HttpPhaseProbe probe) {
+        return HttpWireSize.requestHead(request.method(), request.uri(), request.headers(), probe.bodyBytesSent());
+    }
+
+    /**
+     * Builds the tags of a request: the user's {@code params.tags} plus the {@code method} and
+     * {@code name} system tags. {@code name} defaults to the URL; scripts hitting dynamic URLs
+     * should set it to keep the number of series bounded. Only called once per combination,
+     * by {@link #requestSeries}.
+     */
+    private static TagSet requestTags(String method, String url, Map<String, Object> params) {
+        Map<String, String> userTags = new HashMap<>();
+        if (params != null && params.get("tags") instanceof Map<?, ?> tagsMap) {
+            tagsMap.forEach((k, v) -> userTags.put(k.toString(), v.toString()));
+        }
+        TagSet tags = TagSet.of(userTags).with("method", method);
+        return userTags.containsKey("name") ? tags : tags.with("name", url);
     }
 
-    private Duration parseDuration(Object value) {
+    private static Duration parseDuration(Object value) {
         if (value instanceof Number n) {
             return Duration.ofMillis(n.longValue());
         }
@@ -374,74 +662,198 @@ public class HttpModule implements LyocellModule {
         return Duration.ZERO;
     }
 
-    public static class HttpResponseWrapper {
-        @HostAccess.Export public final int status;
-        @HostAccess.Export public final String body;
-        @HostAccess.Export public final Map<String, String> headers;
-        @HostAccess.Export public final Map<String, Double> timings;
-        @HostAccess.Export public final String proto;
-        @HostAccess.Export public final Map<String, Object> tls_info;
-        @HostAccess.Export public final Map<String, Object> ocsp;
+    /**
+     * The {@code Response} handed to scripts: a read-only proxy over the engine's response.
+     * {@code body}, {@code headers}, {@code timings} and {@code tls_info} are built when a script
+     * first reads them, so checking only {@code status} costs no further allocation. Binary
+     * bodies are views over the bytes the engine read.
+     */
+    public static class HttpResponseWrapper implements ProxyObject {
+        private static final List<String> MEMBERS = List.of("status", "body", "headers", "timings", "proto", "tls_info", "ocsp", "json", "html");
+
+        public final int status;
+        private final HttpEngine.Response response;
+        private final HttpEngine.ResponseType responseType;
+        private final HttpTimings timings;
+        private final String error;
         private final Context context;
-
-        public HttpResponseWrapper(HttpResponse<String> response, double durationMs, Context context) {
-            this.status = response.statusCode();
-            this.body = response.body();
+        // Built on first read; proxies are only ever read from the VU thread
+        private Object body;
+        private boolean bodyRead;
+        private ProxyObject headers;
+        private Map<String, Double> timingsMap;
+        private Map<String, Object> tlsInfo;
+        private Value jsonParse;
+        private Value json;
+        private Map<String, Value> jsonByPath;
+
+        public HttpResponseWrapper(HttpEngine.Response response, HttpEngine.ResponseType responseType, HttpTimings timings, Context context) {
+            this.status = response.status();
+            this.response = response;
+            this.responseType = responseType;
+            this.timings = timings;
+            this.error = null;
             this.context = context;
-            this.proto = response.version().name();
-            
-            this.headers = new HashMap<>();
-            for (Map.Entry<String, List<String>> entry : response.headers().map().entrySet()) {
-                this.headers.put(entry.getKey().toLowerCase(), String.join(",", entry.getValue()));
-            }
-            
-            this.timings = new HashMap<>();
-            this.timings.put("duration", durationMs);
-            this.timings.put("blocked", 0.0);
-            this.timings.put("connecting", 0.0);
-            this.timings.put("tls_handshaking", 0.0);
-            this.timings.put("sending", 0.0);
-            this.timings.put("waiting", durationMs * 0.8); // Dummy waiting time
-            this.timings.put("receiving", durationMs * 0.2); // Dummy receiving time
-
-            // TLS Info (simplified)
-            this.tls_info = new HashMap<>();
-            response.sslSession().ifPresent(session -> {
-                tls_info.put("version", session.getProtocol());
-                tls_info.put("cipher_suite", session.getCipherSuite());
-            });
-
-            this.ocsp = new HashMap<>();
-            this.ocsp.put("status", "unknown");
         }
 
         public HttpResponseWrapper(String error, double durationMs, Context context) {
             this.status = 0;
-            this.body = error;
+            this.response = null;
+            this.responseType = HttpEngine.ResponseType.TEXT;
+            this.timings = new HttpTimings(0, 0, 0, 0, 0, 0, durationMs);
+            this.error = error;
             this.context = context;
-            this.proto = "";
-            this.headers = new HashMap<>();
-            this.timings = new HashMap<>();
-            this.timings.put("duration", durationMs);
-            this.timings.put("blocked", 0.0);
-            this.timings.put("connecting", 0.0);
-            this.timings.put("tls_handshaking", 0.0);
-            this.timings.put("sending", 0.0);
-            this.timings.put("waiting", 0.0);
-            this.timings.put("receiving", 0.0);
-            this.tls_info = new HashMap<>();
-            this.ocsp = new HashMap<>();
         }
 
-        @HostAccess.Export
-        public Object json() {
-            Value parse = context.eval("js", "JSON.parse");
-            return parse.execute(body);
+        @Override
+        public Object getMember(String key) {
+            return switch (key) {
+                case "status" -> status;
+                case "body" -> body();
+                case "headers" -> headers();
+                case "timings" -> timingsMap != null ? timingsMap : (timingsMap = timings.asMap());
+                case "proto" -> response != null ? response.protocol() : "";
+                case "tls_info" -> tlsInfo();
+                case "ocsp" -> Map.of("status", "unknown");
+                case "json" -> (ProxyExecutable) args -> json(args.length > 0 ? args[0] : null);
+                case "html" -> (ProxyExecutable) args -> html(args.length > 0 ? args[0] : null);
+                default -> null;
+            };
+        }
+
+        @Override
+        public Object getMemberKeys() {
+            return ProxyArray.fromList(new ArrayList<>(MEMBERS));
+        }
+
+        @Override
+        public boolean hasMember(String key) {
+            return MEMBERS.contains(key);
+        }
+
+        @Override
+        public void putMember(String key, Value value) {
+            throw new UnsupportedOperationException("Response objects are read-only");
+        }
+
+        /**
+         * A String for text responses, a buffer over the raw bytes for binary ones, null when
+         * discarded; the error message for failed requests.
+         */
+        private Object body() {
+            if (!bodyRead) {
+                bodyRead = true;
+                byte[] bytes = response != null ? response.body() : null;
+                if (response == null) {
+                    body = error;
+                } else if (bytes != null) {
+                    body = switch (responseType) {
+                        case TEXT -> new String(bytes, response.charset());
+                        case BINARY -> ByteBuffer.wrap(bytes);
+                        case NONE -> null;
+                    };
+                }
+            }
+            return body;
+        }
+
+        private ProxyObject headers() {
+            if (headers == null) {
+                headers = new HeadersProxy(response != null ? response.headers() : Map.of());
+            }
+            return headers;
+        }
+
+        private Map<String, Object> tlsInfo() {
+            if (tlsInfo == null) {
+                tlsInfo = new HashMap<>();
+                if (response != null) {
+                    response.sslSession().ifPresent(session -> {
+                        tlsInfo.put("version", session.getProtocol());
+                        tlsInfo.put("cipher_suite", session.getCipherSuite());
+                    });
+                }
+            }
+            return tlsInfo;
+        }
+
+        /**
+         * The body as text, decoding binary bodies on demand.
+         */
+        private String text() {
+            if (body() instanceof String s) return s;
+            if (response == null || response.body() == null) throw new IllegalStateException("The response body was discarded (responseType 'none')");
+            return new String(response.body(), response.charset());
+        }
+
+        /**
+         * The body parsed as JSON, kept for later calls. With a selector such as
+         * {@code data.items.0.id}, only that value: picked from the parsed body if there is one,
+         * otherwise by streaming the body up to it. Unknown paths give {@code undefined}.
+         */
+        public Object json(Value selector) {
+            if (selector == null || selector.isNull()) {
+                if (json == null) {
+                    json = jsonParse().execute(text());
+                }
+                return json;
+            }
+            String path = selector.asString();
+            if (json != null) {
+                return select(json, path);
+            }
+            if (jsonByPath == null) {
+                jsonByPath = new HashMap<>();
+            }
+            Value selected = jsonByPath.get(path);
+            if (selected == null) {
+                String fragment;
+                try {
+                    // A body already decoded for the script is not decoded again
+                    if (bodyRead && body instanceof String decoded) {
+                        fragment = JsonSelector.select(decoded, path);
+                    } else if (response != null && response.body() != null) {
+                        fragment = JsonSelector.select(response.body(), response.charset(), path);
+                    } else {
+                        fragment = JsonSelector.select(text(), path);
+                    }
+                } catch (IOException e) {
+                    throw new IllegalArgumentException("Response body is not valid JSON: " + e.getMessage(), e);
+                }
+                selected = fragment != null ? jsonParse().execute(fragment) : undefined();
+                jsonByPath.put(path, selected);
+            }
+            return selected;
+        }
+
+        private Value select(Value value, String path) {
+            for (String segment : JsonSelector.segments(path)) {
+                int index = JsonSelector.index(segment);
+                if (value.hasArrayElements()) {
+                    if (index < 0 || index >= value.getArraySize()) return undefined();
+                    value = value.getArrayElement(index);
+                } else if (value.hasMembers() && value.hasMember(segment)) {
+                    value = value.getMember(segment);
+                } else {
+                    return undefined();
+                }
+            }
+            return value;
+        }
+
+        private Value jsonParse() {
+            if (jsonParse == null) {
+                jsonParse = context.eval("js", "JSON.parse");
+            }
+            return jsonParse;
+        }
+
+        private Value undefined() {
+            return context.eval("js", "undefined");
         }
 
-        @HostAccess.Export
         public Object html(Value selector) {
-            Document doc = Jsoup.parse(body);
+            Document doc = Jsoup.parse(text());
             if (selector != null && selector.isString()) {
                 return new Selection(doc.select(selector.asString()), context);
             }
@@ -449,6 +861,51 @@ public class HttpModule implements LyocellModule {
         }
     }
 
+    /**
+     * Response headers as a read-only object with lowercase names; repeated headers are joined
+     * with commas when read.
+     */
+    private static final class HeadersProxy implements ProxyObject {
+        private final Map<String, List<String>> headers;
+
+        HeadersProxy(Map<String, List<String>> headers) {
+            this.headers = headers;
+        }
+
+        @Override
+        public Object getMember(String key) {
+            List<String> values = headers.get(key);
+            if (values == null) {
+                for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+                    if (entry.getKey().equalsIgnoreCase(key)) {
+                        values = entry.getValue();
+                        break;
+                    }
+                }
+            }
+            return values == null ? null : values.size() == 1 ? values.getFirst() : String.join(",", values);
+        }
+
+        @Override
+        public Object getMemberKeys() {
+            List<Object> names = new ArrayList<>(headers.size());
+            for (String name : headers.keySet()) {
+                names.add(name.toLowerCase());
+            }
+            return ProxyArray.fromList(names);
+        }
+
+        @Override
+        public boolean hasMember(String key) {
+            return getMember(key) != null;
+        }
+
+        @Override
+        public void putMember(String key, Value value) {
+            throw new UnsupportedOperationException("Response headers are read-only");
+        }
+    }
+
     public static class Selection {
         private final Elements elements;
         private final Context context;
@@ -0,0 +1,252 @@
+package com.wilhg.lyocell.modules;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+import javax.net.ssl.SSLSession;
+
+import com.wilhg.lyocell.metrics.HttpTimings;
+
+/**
+ * Timestamps the phases of one {@link java.net.http.HttpClient} exchange with {@link System#nanoTime()}
+ * and counts the body bytes it sent and received.
+ * <p>
+ * The JDK client exposes no connection events, so the probe observes the points it can:
+ * the client asks the request body for its length while writing the request head, which
+ * happens once a connection is ready; it subscribes to the body to send it; and it hands
+ * the response head and body to the body handler. Time before the request head is
+ * connection setup, split into TLS handshaking when the TLS session was created during
+ * this request. On a reused TLS connection that time counts as blocked, as does time spent
+ * waiting for a connection slot before the request was handed to the client.
+ * <p>
+ * Engines that see the connection being set up, like {@link NettyHttpEngine}, report each
+ * step through the {@code mark*} methods instead, and the probe uses those timestamps.
+ */
+final class HttpPhaseProbe {
+    private final long startNanos = System.nanoTime();
+    private final long startMillis = System.currentTimeMillis();
+    private volatile long readyNanos;
+    private volatile long connectStartNanos;
+    private volatile long connectedNanos;
+    private volatile long handshakenNanos;
+    private volatile boolean connectionReused;
+    private volatile long headWrittenNanos;
+    private volatile long bodySentNanos;
+    private volatile long responseStartNanos;
+    private volatile long responseEndNanos;
+    // Each written by a single subscriber at a time
+    private volatile long bodyBytesSent;
+    private volatile long bodyBytesReceived;
+
+    /**
+     * Marks the point the request got its connection slot and was handed to the client.
+     */
+    void markReady() {
+        readyNanos = System.nanoTime();
+    }
+
+    void markConnectStart() {
+        connectionReused = false;
+        handshakenNanos = 0;
+        connectedNanos = 0;
+        connectStartNanos = System.nanoTime();
+    }
+
+    void markConnected() {
+        connectedNanos = System.nanoTime();
+    }
+
+    void markHandshaken() {
+        handshakenNanos = System.nanoTime();
+    }
+
+    /**
+     * Marks that the request goes out on an idle connection, so no setup happens.
+     */
+    void markConnectionReused() {
+        connectedNanos = 0;
+        connectionReused = true;
+    }
+
+    void markHeadWritten() {
+        headWrittenNanos = System.nanoTime();
+    }
+
+    void markBodySent() {
+        bodySentNanos = System.nanoTime();
+    }
+
+    void markResponseStart() {
+        responseStartNanos = System.nanoTime();
+    }
+
+    void markResponseEnd() {
+        responseEndNanos = System.nanoTime();
+    }
+
+    void countSent(long bytes) {
+        bodyBytesSent += bytes;
+    }
+
+    void countReceived(long bytes) {
+        bodyBytesReceived += bytes;
+    }
+
+    HttpRequest.BodyPublisher wrap(HttpRequest.BodyPublisher publisher) {
+        return new HttpRequest.BodyPublisher() {
+            @Override
+            public long contentLength() {
+                headWrittenNanos = System.nanoTime();
+                return publisher.contentLength();
+            }
+
+            @Override
+            public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+                publisher.subscribe(new Flow.Subscriber<>() {
+                    @Override
+                    public void onSubscribe(Flow.Subscription subscription) {
+                        subscriber.onSubscribe(subscription);
+                    }
+
+                    @Override
+                    public void onNext(ByteBuffer item) {
+                        bodyBytesSent += item.remaining();
+                        subscriber.onNext(item);
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        subscriber.onError(throwable);
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        bodySentNanos = System.nanoTime();
+                        subscriber.onComplete();
+                    }
+                });
+            }
+        };
+    }
+
+    <T> HttpResponse.BodyHandler<T> wrap(HttpResponse.BodyHandler<T> handler) {
+        return responseInfo -> {
+            responseStartNanos = System.nanoTime();
+            HttpResponse.BodySubscriber<T> subscriber = handler.apply(responseInfo);
+            return new HttpResponse.BodySubscriber<>() {
+                @Override
+                public CompletionStage<T> getBody() {
+                    return subscriber.getBody();
+                }
+
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscriber.onSubscribe(subscription);
+                }
+
+                @Override
+                public void onNext(List<ByteBuffer> item) {
+                    long bytes = 0;
+                    for (ByteBuffer buffer : item) {
+                        bytes += buffer.remaining();
+                    }
+                    bodyBytesReceived += bytes;
+                    subscriber.onNext(item);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    subscriber.onError(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    responseEndNanos = System.nanoTime();
+                    subscriber.onComplete();
+                }
+            };
+        };
+    }
+
+    /**
+     * Whether the client got as far as writing the request head.
+     */
+    boolean headWritten() {
+        return headWrittenNanos != 0;
+    }
+
+    long bodyBytesSent() {
+        return bodyBytesSent;
+    }
+
+    long bodyBytesReceived() {
+        return bodyBytesReceived;
+    }
+
+    /**
+     * Milliseconds since the probe was created.
+     */
+    double elapsedMillis() {
+        return millis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Resolves the phases once the response body was read.
+     *
+     * @param session The TLS session of the exchange, used to tell new handshakes from reused connections.
+     */
+    HttpTimings timings(Optional<SSLSession> session) {
+        long end = responseEndNanos != 0 ? responseEndNanos : System.nanoTime();
+        long responseStart = clamp(responseStartNanos != 0 ? responseStartNanos : end, startNanos, end);
+        long ready = clamp(readyNanos != 0 ? readyNanos : startNanos, startNanos, responseStart);
+        // Requests without a body are sent with their head
+        long headWritten = clamp(headWrittenNanos != 0 ? headWrittenNanos : ready, ready, responseStart);
+        long bodySent = clamp(bodySentNanos != 0 ? bodySentNanos : headWritten, headWritten, responseStart);
+
+        double queued = millis(ready - startNanos);
+        double setup = millis(headWritten - ready);
+        double blocked = queued;
+        double connecting = setup;
+        double tlsHandshaking = 0;
+        if (connectedNanos != 0) {
+            long connectStart = clamp(connectStartNanos, ready, headWritten);
+            long connected = clamp(connectedNanos, connectStart, headWritten);
+            long handshaken = handshakenNanos != 0 ? clamp(handshakenNanos, connected, headWritten) : connected;
+            connecting = millis(connected - connectStart);
+            tlsHandshaking = millis(handshaken - connected);
+            blocked += setup - connecting - tlsHandshaking;
+        } else if (connectionReused) {
+            blocked += setup;
+            connecting = 0;
+        } else if (session.isPresent()) {
+            long handshakeStart = session.get().getCreationTime();
+            long readyMillis = startMillis + (long) queued;
+            if (handshakeStart >= readyMillis) {
+                tlsHandshaking = Math.min(setup, Math.max(0, readyMillis + setup - handshakeStart));
+                connecting = setup - tlsHandshaking;
+            } else {
+                blocked += setup;
+                connecting = 0;
+            }
+        }
+
+        return new HttpTimings(blocked, connecting, tlsHandshaking,
+                millis(bodySent - headWritten),
+                millis(responseStart - bodySent),
+                millis(end - responseStart),
+                millis(end - startNanos));
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,85 @@
+package com.wilhg.lyocell.modules;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sizes of HTTP message heads as they are written in HTTP/1.1.
+ * <p>
+ * The JDK client hands out bodies byte for byte (still compressed, as it does not decode
+ * {@code Content-Encoding}), but never the serialized head, so head sizes are rebuilt from
+ * the request line, status line and headers. Headers the client adds on its own and
+ * HTTP/2 header compression are not reflected.
+ */
+final class HttpWireSize {
+    private static final int CRLF = 2;
+
+    private HttpWireSize() {}
+
+    /**
+     * Size of {@code METHOD /path?query HTTP/1.1}, the host line and the request headers.
+     */
+    static long requestHead(HttpRequest request, long contentLength) {
+        return requestHead(request.method(), request.uri(), request.headers().map(), contentLength);
+    }
+
+    static long requestHead(String method, URI uri, Map<String, List<String>> headers, long contentLength) {
+        String target = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        if (uri.getRawQuery() != null) {
+            target += "?" + uri.getRawQuery();
+        }
+        long size = utf8(method) + 1 + utf8(target) + " HTTP/1.1".length() + CRLF;
+        size += "Host: ".length() + utf8(uri.getRawAuthority() != null ? uri.getRawAuthority() : "") + CRLF;
+        size += headers(headers);
+        if (contentLength > 0) {
+            size += "Content-Length: ".length() + Long.toString(contentLength).length() + CRLF;
+        }
+        return size + CRLF;
+    }
+
+    /**
+     * Size of the status line and the response headers.
+     */
+    static long responseHead(HttpResponse<?> response) {
+        return responseHead(response.headers().map());
+    }
+
+    static long responseHead(Map<String, List<String>> headers) {
+        long size = "HTTP/1.1 000 ".length() + CRLF;
+        return size + headers(headers) + CRLF;
+    }
+
+    private static long headers(Map<String, List<String>> headers) {
+        long size = 0;
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            for (String value : entry.getValue()) {
+                size += utf8(entry.getKey()) + 2 + utf8(value) + CRLF;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Number of bytes {@code text} takes in UTF-8, without encoding it.
+     */
+    static long utf8(CharSequence text) {
+        long size = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                size++;
+            } else if (c < 0x800) {
+                size += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                size += 4;
+                i++;
+            } else {
+                size += 3;
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,87 @@
+package com.wilhg.lyocell.modules;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * The default engine, on {@link java.net.http.HttpClient}. Which client, and so which connections,
+ * a request uses is up to the {@link HttpConnectionPool}.
+ */
+public final class JdkHttpEngine implements HttpEngine {
+    private final HttpConnectionPool pool;
+
+    public JdkHttpEngine(HttpConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public Session open(CookieManager cookies) {
+        HttpConnectionPool.Connections connections = pool.connections(cookies);
+        return new Session() {
+            @Override
+            public Response send(Request request, HttpPhaseProbe probe) throws IOException, InterruptedException {
+                try (HttpConnectionPool.Connections.Lease lease = connections.acquire(request.uri(), request.insecure(), request.followRedirects())) {
+                    probe.markReady();
+                    HttpRequest.Builder builder = HttpRequest.newBuilder().uri(request.uri());
+                    if (request.timeout() != null) {
+                        builder.timeout(request.timeout());
+                    }
+                    request.headers().forEach((name, values) -> values.forEach(value -> builder.header(name, value)));
+                    if (!lease.handlesCookies()) {
+                        cookies.get(request.uri(), Map.of()).forEach((name, values) -> values.forEach(value -> builder.header(name, value)));
+                    }
+                    HttpRequest.BodyPublisher body = request.body() != null
+                            ? HttpRequest.BodyPublishers.ofByteArray(request.body())
+                            : HttpRequest.BodyPublishers.noBody();
+                    builder.method(request.method(), probe.wrap(body));
+
+                    // Discarded bodies still flow through the probe, which counts them
+                    HttpResponse.BodyHandler<byte[]> bodyHandler = request.responseType() == ResponseType.NONE
+                            ? HttpResponse.BodyHandlers.replacing(null)
+                            : HttpResponse.BodyHandlers.ofByteArray();
+                    HttpResponse<byte[]> response = lease.client().send(builder.build(), probe.wrap(bodyHandler));
+                    if (!lease.handlesCookies()) {
+                        cookies.put(response.uri(), response.headers().map());
+                    }
+                    return new Response(response.statusCode(), response.version().name(), response.headers().map(),
+                            response.body(), charset(response.headers().firstValue("content-type").orElse(null)),
+                            response.sslSession(), response.uri());
+                }
+            }
+
+            @Override
+            public void close() {
+                connections.close();
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    /**
+     * The {@code charset} parameter of a {@code Content-Type}, as {@code BodyHandlers.ofString()} reads it.
+     */
+    static Charset charset(String contentType) {
+        if (contentType != null) {
+            for (String parameter : contentType.split(";")) {
+                String[] pair = parameter.trim().split("=", 2);
+                if (pair.length == 2 && pair[0].trim().equalsIgnoreCase("charset")) {
+                    try {
+                        return Charset.forName(pair[1].trim().replace("\"", ""));
+                    } catch (IllegalArgumentException e) {
+                        break;
+                    }
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+}
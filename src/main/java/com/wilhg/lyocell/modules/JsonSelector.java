@@ -0,0 +1,120 @@
+package com.wilhg.lyocell.modules;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Picks one value out of a JSON document by a dotted path such as {@code data.items.0.id}, the
+ * selector of k6's {@code res.json(selector)}. Numeric segments index arrays; any other segment
+ * names an object key.
+ * <p>
+ * The document is streamed: siblings of the path are skipped without being built, and parsing
+ * stops as soon as the selected value has been read, so the rest of the body is never looked at.
+ */
+final class JsonSelector {
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private JsonSelector() {}
+
+    /**
+     * The selected value as JSON text, or {@code null} if the document has nothing at {@code path}.
+     *
+     * @throws IOException If the document is not valid JSON up to the selected value.
+     */
+    static String select(byte[] body, Charset charset, String path) throws IOException {
+        // Jackson detects the UTF encodings itself; anything else is decoded first
+        try (JsonParser parser = isUnicode(charset)
+                ? FACTORY.createParser(body)
+                : FACTORY.createParser(new String(body, charset))) {
+            return select(parser, path);
+        }
+    }
+
+    static String select(String body, String path) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(body)) {
+            return select(parser, path);
+        }
+    }
+
+    private static String select(JsonParser parser, String path) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == null) {
+            throw new IOException("Empty JSON document");
+        }
+        for (String segment : segments(path)) {
+            if (!descend(parser, token, segment)) {
+                return null;
+            }
+            token = parser.currentToken();
+        }
+        StringWriter out = new StringWriter();
+        try (JsonGenerator generator = FACTORY.createGenerator(out)) {
+            generator.copyCurrentStructure(parser);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Moves the parser from the start of a container to the start of its child named
+     * {@code segment}, skipping the children before it.
+     */
+    private static boolean descend(JsonParser parser, JsonToken container, String segment) throws IOException {
+        if (container == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                boolean match = segment.equals(parser.currentName());
+                parser.nextToken();
+                if (match) {
+                    return true;
+                }
+                parser.skipChildren();
+            }
+            return false;
+        }
+        if (container == JsonToken.START_ARRAY) {
+            int index = index(segment);
+            if (index < 0) {
+                return false;
+            }
+            for (int i = 0; parser.nextToken() != JsonToken.END_ARRAY; i++) {
+                if (i == index) {
+                    return true;
+                }
+                parser.skipChildren();
+            }
+        }
+        return false;
+    }
+
+    static String[] segments(String path) {
+        return path.isEmpty() ? new String[0] : path.split("\\.", -1);
+    }
+
+    /**
+     * The array index a segment names, or -1 if it is not a non-negative integer.
+     */
+    static int index(String segment) {
+        if (segment.isEmpty() || segment.length() > 9) {
+            return -1;
+        }
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+        }
+        return Integer.parseInt(segment);
+    }
+
+    private static boolean isUnicode(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.UTF_16)
+                || charset.equals(StandardCharsets.UTF_16BE) || charset.equals(StandardCharsets.UTF_16LE)
+                || charset.name().startsWith("UTF-32");
+    }
+}
@@ -4,23 +4,29 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.wilhg.lyocell.engine.JsEngine;
+import com.wilhg.lyocell.metrics.MetricsCollector;
 import org.graalvm.polyglot.Context;
 import org.graalvm.polyglot.HostAccess;
 import org.graalvm.polyglot.Value;
 
 import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class McpModule implements LyocellModule {
@@ -29,6 +35,7 @@ public class McpModule implements LyocellModule {
             .build();
     private final Map<String, McpClientWrapper> activeClients = new ConcurrentHashMap<>();
     private JsEngine jsEngine;
+    private MetricsCollector metricsCollector;
 
     @Override
     public String getName() {
@@ -49,6 +56,7 @@ public class McpModule implements LyocellModule {
     @Override
     public void install(Context context, ModuleContext moduleContext) {
         this.jsEngine = moduleContext.jsEngine();
+        this.metricsCollector = moduleContext.metricsCollector();
         context.getBindings("js").putMember("LyocellMcp", this);
     }
 
@@ -60,7 +68,9 @@ public class McpModule implements LyocellModule {
 
     @HostAccess.Export
     public McpClientWrapper connect(String url, Value options) {
-        McpClientWrapper client = new McpClientWrapper(url, options, httpClient, jsEngine);
+        // The SSE stream is read on its own thread, so resolve the scenario's counters now
+        MetricsCollector.DataCounters data = metricsCollector != null ? metricsCollector.dataCounters() : null;
+        McpClientWrapper client = new McpClientWrapper(url, options, httpClient, jsEngine, data);
         activeClients.put(url + System.nanoTime(), client);
         client.start();
         return client;
@@ -71,16 +81,19 @@ public class McpModule implements LyocellModule {
         private final Map<String, String> headers = new HashMap<>();
         private final HttpClient httpClient;
         private final JsEngine jsEngine;
+        private final MetricsCollector.DataCounters data;
         private final AtomicLong requestId = new AtomicLong(1);
+        private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
         private final Map<Long, CompletableFuture<JsonNode>> pendingRequests = new ConcurrentHashMap<>();
         private final Map<String, Value> requestHandlers = new ConcurrentHashMap<>();
         private volatile String postUrl;
         private volatile boolean closed = false;
 
-        public McpClientWrapper(String url, Value options, HttpClient httpClient, JsEngine jsEngine) {
+        public McpClientWrapper(String url, Value options, HttpClient httpClient, JsEngine jsEngine, MetricsCollector.DataCounters data) {
             this.sseUrl = url;
             this.httpClient = httpClient;
             this.jsEngine = jsEngine;
+            this.data = data;
             if (options != null && options.hasMember("headers")) {
                 Value headersVal = options.getMember("headers");
                 for (String key : headersVal.getMemberKeys()) {
@@ -101,7 +114,8 @@ public class McpModule implements LyocellModule {
 
             try {
                 HttpResponse<java.io.InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
-                try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body()))) {
+                countExchange(request, 0, response);
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(countReceived(response.body())))) {
                     String line;
                     while ((line = reader.readLine()) != null && !closed) {
                         if (line.startsWith("data: ")) {
@@ -143,6 +157,39 @@ public class McpModule implements LyocellModule {
             }
         }
 
+        /**
+         * Counts the request and the response head; response bodies are counted as they are read.
+         */
+        private void countExchange(HttpRequest request, long bodySize, HttpResponse<?> response) {
+            if (data != null) {
+                data.sent().increment(HttpWireSize.requestHead(request, bodySize) + bodySize);
+                data.received().increment(HttpWireSize.responseHead(response));
+            }
+        }
+
+        private InputStream countReceived(InputStream in) {
+            if (data == null) return in;
+            return new FilterInputStream(in) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) {
+                        data.received().increment();
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int n = super.read(buffer, offset, length);
+                    if (n > 0) {
+                        data.received().increment(n);
+                    }
+                    return n;
+                }
+            };
+        }
+
         private void handleServerRequest(JsonNode request) {
             String method = request.get("method").asText();
             jsEngine.executeAsync(() -> {
@@ -276,23 +323,21 @@ public class McpModule implements LyocellModule {
             sendAsync(request);
 
             try {
-                while (!future.isDone()) {
-                    int state = jsEngine.pause();
-                    try {
-                        jsEngine.processEvents();
-                        Thread.sleep(10);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        break;
-                    } finally {
-                        jsEngine.resume(state);
-                    }
+                jsEngine.await(future, REQUEST_TIMEOUT);
+                if (!future.isDone()) {
+                    // Nobody will complete it any more
+                    pendingRequests.remove(id);
+                    throw new TimeoutException(Thread.currentThread().isInterrupted()
+                            ? "interrupted while waiting for " + method
+                            : "no response to " + method + " within " + REQUEST_TIMEOUT.toSeconds() + "s");
                 }
-                JsonNode response = future.get(30, TimeUnit.SECONDS);
+                JsonNode response = future.join();
                 if (response.has("error")) {
                     throw new RuntimeException(response.get("error").get("message").asText());
                 }
                 return mapper.convertValue(response.get("result"), Object.class);
+            } catch (CompletionException e) {
+                throw new RuntimeException("MCP Request failed: " + e.getCause().getMessage());
             } catch (Exception e) {
                 throw new RuntimeException("MCP Request failed: " + e.getMessage());
             }
@@ -326,7 +371,17 @@ public class McpModule implements LyocellModule {
                         .POST(HttpRequest.BodyPublishers.ofString(body));
                 headers.forEach(builder::header);
 
-                httpClient.sendAsync(builder.build(), HttpResponse.BodyHandlers.discarding());
+                HttpRequest request = builder.build();
+                if (data == null) {
+                    httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+                    return;
+                }
+                HttpPhaseProbe probe = new HttpPhaseProbe();
+                httpClient.sendAsync(request, probe.wrap(HttpResponse.BodyHandlers.discarding()))
+                        .thenAccept(response -> {
+                            countExchange(request, HttpWireSize.utf8(body), response);
+                            data.received().increment(probe.bodyBytesReceived());
+                        });
             } catch (JsonProcessingException e) {
                 throw new RuntimeException(e);
             }
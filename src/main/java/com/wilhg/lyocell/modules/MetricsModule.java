@@ -1,8 +1,14 @@
 package com.wilhg.lyocell.modules;
 
 import com.wilhg.lyocell.metrics.MetricsCollector;
+import com.wilhg.lyocell.metrics.RateMetric;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.DoubleConsumer;
+import java.util.function.Function;
 import org.graalvm.polyglot.Context;
 import org.graalvm.polyglot.HostAccess;
+import org.graalvm.polyglot.Value;
 
 public class MetricsModule implements LyocellModule {
     private MetricsCollector collector;
@@ -23,21 +29,21 @@ public class MetricsModule implements LyocellModule {
     public String getJsSource() {
         return """
             const Metrics = globalThis.LyocellMetrics;
-            export class Counter {
-                constructor(name) { this.name = name; }
-                add(val) { Metrics.addCounter(this.name, val); }
+            class Metric {
+                constructor(type, name) { this.name = name; this.handle = Metrics.handle(type, name); }
+                add(val, tags) { tags ? this.handle.addTagged(Number(val), tags) : this.handle.add(Number(val)); }
             }
-            export class Trend {
-                constructor(name) { this.name = name; }
-                add(val) { Metrics.addTrend(this.name, val); }
+            export class Counter extends Metric {
+                constructor(name) { super('counter', name); }
             }
-            export class Gauge {
-                constructor(name) { this.name = name; }
-                add(val) { Metrics.setGauge(this.name, val); }
+            export class Trend extends Metric {
+                constructor(name) { super('trend', name); }
             }
-            export class Rate {
-                constructor(name) { this.name = name; }
-                add(val) { Metrics.addRate(this.name, val); }
+            export class Gauge extends Metric {
+                constructor(name) { super('gauge', name); }
+            }
+            export class Rate extends Metric {
+                constructor(name) { super('rate', name); }
             }
             export default { Counter, Trend, Gauge, Rate };
             """;
@@ -49,6 +55,30 @@ public class MetricsModule implements LyocellModule {
         context.getBindings("js").putMember("LyocellMetrics", this);
     }
 
+    /**
+     * Resolves the untagged series of a custom metric once, when the JS metric object is created.
+     */
+    @HostAccess.Export
+    public MetricHandle handle(String type, String name) {
+        return switch (type) {
+            case "counter" -> new MetricHandle(collector.counter(name)::increment,
+                    tags -> collector.counter(name, tags)::increment);
+            case "trend" -> new MetricHandle(collector.trend(name)::record,
+                    tags -> collector.trend(name, tags)::record);
+            case "gauge" -> new MetricHandle(collector.gauge(name)::set,
+                    tags -> collector.gauge(name, tags)::set);
+            case "rate" -> {
+                RateMetric rate = collector.rate(name);
+                yield new MetricHandle(value -> rate.add(value != 0),
+                        tags -> {
+                            RateMetric tagged = collector.rate(name, tags);
+                            return value -> tagged.add(value != 0);
+                        });
+            }
+            default -> throw new IllegalArgumentException("Unknown metric type: " + type);
+        };
+    }
+
     @HostAccess.Export
     public void addCounter(String name, long value) {
         collector.addCounter(name, value);
@@ -68,4 +98,28 @@ public class MetricsModule implements LyocellModule {
     public void addRate(String name, boolean value) {
         collector.addRate(name, value);
     }
+
+    public static class MetricHandle {
+        private final DoubleConsumer untagged;
+        private final Function<Map<String, String>, DoubleConsumer> tagged;
+
+        MetricHandle(DoubleConsumer untagged, Function<Map<String, String>, DoubleConsumer> tagged) {
+            this.untagged = untagged;
+            this.tagged = tagged;
+        }
+
+        @HostAccess.Export
+        public void add(double value) {
+            untagged.accept(value);
+        }
+
+        @HostAccess.Export
+        public void addTagged(double value, Value tags) {
+            Map<String, String> tagMap = new HashMap<>();
+            for (String key : tags.getMemberKeys()) {
+                tagMap.put(key, tags.getMember(key).toString());
+            }
+            tagged.apply(tagMap).accept(value);
+        }
+    }
 }
@@ -0,0 +1,624 @@
+package com.wilhg.lyocell.modules;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSession;
+
+import com.wilhg.lyocell.metrics.MetricsCollector;
+
+import io.grpc.netty.shaded.io.netty.bootstrap.Bootstrap;
+import io.grpc.netty.shaded.io.netty.buffer.ByteBuf;
+import io.grpc.netty.shaded.io.netty.buffer.ByteBufAllocator;
+import io.grpc.netty.shaded.io.netty.buffer.ByteBufUtil;
+import io.grpc.netty.shaded.io.netty.buffer.CompositeByteBuf;
+import io.grpc.netty.shaded.io.netty.buffer.PooledByteBufAllocator;
+import io.grpc.netty.shaded.io.netty.buffer.Unpooled;
+import io.grpc.netty.shaded.io.netty.channel.Channel;
+import io.grpc.netty.shaded.io.netty.channel.ChannelFuture;
+import io.grpc.netty.shaded.io.netty.channel.ChannelHandlerContext;
+import io.grpc.netty.shaded.io.netty.channel.ChannelInitializer;
+import io.grpc.netty.shaded.io.netty.channel.ChannelOption;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.SimpleChannelInboundHandler;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.socket.SocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioSocketChannel;
+import io.grpc.netty.shaded.io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.grpc.netty.shaded.io.netty.handler.codec.http.FullHttpRequest;
+import io.grpc.netty.shaded.io.netty.handler.codec.http.HttpClientCodec;
+import io.grpc.netty.shaded.io.netty.handler.codec.http.HttpContent;
+import io.grpc.netty.shaded.io.netty.handler.codec.http.HttpHeaderNames;
+import io.grpc.netty.shaded.io.netty.handler.codec.http.HttpHeaderValues;
+import io.grpc.netty.shaded.io.netty.handler.codec.http.HttpHeaders;
+import io.grpc.netty.shaded.io.netty.handler.codec.http.HttpMethod;
+import io.grpc.netty.shaded.io.netty.handler.codec.http.HttpObject;
+import io.grpc.netty.shaded.io.netty.handler.codec.http.HttpResponse;
+import io.grpc.netty.shaded.io.netty.handler.codec.http.HttpStatusClass;
+import io.grpc.netty.shaded.io.netty.handler.codec.http.HttpUtil;
+import io.grpc.netty.shaded.io.netty.handler.codec.http.HttpVersion;
+import io.grpc.netty.shaded.io.netty.handler.codec.http.LastHttpContent;
+import io.grpc.netty.shaded.io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.grpc.netty.shaded.io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.grpc.netty.shaded.io.netty.handler.codec.http2.Http2Settings;
+import io.grpc.netty.shaded.io.netty.handler.codec.http2.Http2StreamChannel;
+import io.grpc.netty.shaded.io.netty.handler.codec.http2.Http2StreamChannelBootstrap;
+import io.grpc.netty.shaded.io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.grpc.netty.shaded.io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.grpc.netty.shaded.io.netty.handler.ssl.ApplicationProtocolNames;
+import io.grpc.netty.shaded.io.netty.handler.ssl.SslContext;
+import io.grpc.netty.shaded.io.netty.handler.ssl.SslContextBuilder;
+import io.grpc.netty.shaded.io.netty.handler.ssl.SslHandler;
+import io.grpc.netty.shaded.io.netty.handler.ssl.SslProvider;
+import io.grpc.netty.shaded.io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.grpc.netty.shaded.io.netty.util.concurrent.Future;
+
+/**
+ * An engine on Netty's event loops (the copy shaded into {@code grpc-netty-shaded}), for request
+ * rates the JDK client cannot reach.
+ * <p>
+ * A few event-loop threads serve every VU and connections are kept per host for the whole
+ * test. Bodies are written from and read into pooled buffers. HTTPS hosts that pick
+ * {@code h2} through ALPN get one multiplexed connection; all other hosts get HTTP/1.1
+ * keep-alive connections. {@code maxConnectionsPerHost} caps the requests in flight per host,
+ * and with {@link HttpConnectionPool.Scope#NONE} every connection is closed after its exchange.
+ * The per-VU scope does not apply, as connections never belong to a VU here. Cookies stay per
+ * VU, and redirects are followed by the engine.
+ * <p>
+ * The engine sees connections being opened, so {@code http_req_connecting} and
+ * {@code http_req_tls_handshaking} are measured rather than inferred.
+ */
+public final class NettyHttpEngine implements HttpEngine {
+    private static final int MAX_REDIRECTS = 10;
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(60);
+    // Server push is disabled, so no inbound streams ever reach this
+    private static final ChannelInitializer<Channel> NO_INBOUND_STREAMS = new ChannelInitializer<>() {
+        @Override
+        protected void initChannel(Channel ch) {}
+    };
+
+    private record HostKey(String scheme, String host, int port, boolean insecure) {
+        static HostKey of(URI uri, boolean insecure) {
+            String scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase(Locale.ROOT) : "http";
+            int port = uri.getPort() != -1 ? uri.getPort() : "https".equals(scheme) ? 443 : 80;
+            return new HostKey(scheme, uri.getHost(), port, insecure);
+        }
+
+        boolean tls() {
+            return "https".equals(scheme);
+        }
+
+        String authority() {
+            return port == (tls() ? 443 : 80) ? host : host + ":" + port;
+        }
+    }
+
+    private final EventLoopGroup group;
+    private final boolean reuseConnections;
+    private final int maxConnectionsPerHost;
+    private final PoolGauge connectionsGauge;
+    private final PoolGauge activeGauge;
+    private final PoolGauge waitingGauge;
+    private final SslContext trustingContext;
+    private final SslContext verifyingContext;
+    private final Map<HostKey, HostPool> hosts = new ConcurrentHashMap<>();
+
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final AtomicInteger waitingRequests = new AtomicInteger();
+
+    /**
+     * @param threads               Event-loop threads; {@code 0} for Netty's default of twice the cores.
+     * @param scope                 Only {@link HttpConnectionPool.Scope#NONE} changes anything, by closing
+     *                              connections after each exchange.
+     * @param maxConnectionsPerHost Requests in flight per host; {@code 0} for no cap.
+     * @param metricsCollector      Receives the {@code http_pool_connections} gauge, plus {@code http_pool_active}
+     *                              and {@code http_pool_waiting} when requests are capped; may be {@code null}.
+     */
+    public NettyHttpEngine(int threads, HttpConnectionPool.Scope scope, int maxConnectionsPerHost, MetricsCollector metricsCollector) {
+        if (maxConnectionsPerHost < 0) {
+            throw new IllegalArgumentException("maxConnectionsPerHost must not be negative");
+        }
+        this.reuseConnections = scope != HttpConnectionPool.Scope.NONE;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.connectionsGauge = new PoolGauge(metricsCollector, "http_pool_connections");
+        this.activeGauge = new PoolGauge(metricsCollector, "http_pool_active");
+        this.waitingGauge = new PoolGauge(metricsCollector, "http_pool_waiting");
+        try {
+            this.verifyingContext = sslContext(false);
+            this.trustingContext = sslContext(true);
+        } catch (SSLException e) {
+            throw new IllegalStateException("Cannot set up TLS for the Netty HTTP engine", e);
+        }
+        this.group = new NioEventLoopGroup(threads);
+    }
+
+    private static SslContext sslContext(boolean insecure) throws SSLException {
+        SslContextBuilder builder = SslContextBuilder.forClient()
+                .sslProvider(SslProvider.JDK)
+                .applicationProtocolConfig(new ApplicationProtocolConfig(
+                        ApplicationProtocolConfig.Protocol.ALPN,
+                        ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+                        ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+                        ApplicationProtocolNames.HTTP_2,
+                        ApplicationProtocolNames.HTTP_1_1));
+        if (insecure) {
+            builder.trustManager(InsecureTrustManagerFactory.INSTANCE);
+        }
+        return builder.build();
+    }
+
+    @Override
+    public Session open(CookieManager cookies) {
+        return new Session() {
+            @Override
+            public Response send(Request request, HttpPhaseProbe probe) throws IOException, InterruptedException {
+                probe.markReady();
+                Request current = request;
+                for (int redirects = 0; ; redirects++) {
+                    Response response = exchange(current, cookies, probe);
+                    String location = header(response.headers(), "location");
+                    if (!current.followRedirects() || location == null || !isRedirect(response.status()) || redirects == MAX_REDIRECTS) {
+                        return response;
+                    }
+                    current = redirect(current, response.status(), current.uri().resolve(location));
+                }
+            }
+
+            @Override
+            public void close() {}
+        };
+    }
+
+    @Override
+    public void close() {
+        hosts.values().forEach(HostPool::close);
+        hosts.clear();
+        group.shutdownGracefully(0, 2, TimeUnit.SECONDS);
+    }
+
+    private static boolean isRedirect(int status) {
+        return status == 301 || status == 302 || status == 303 || status == 307 || status == 308;
+    }
+
+    /**
+     * The request to send to {@code target}. Like browsers, 303s and POSTs answered with 301 or
+     * 302 continue as a GET without a body.
+     */
+    private static Request redirect(Request request, int status, URI target) {
+        boolean toGet = (status == 303 && !"HEAD".equals(request.method()))
+                || ((status == 301 || status == 302) && "POST".equals(request.method()));
+        if (!toGet) {
+            return new Request(request.method(), target, request.headers(), request.body(), request.timeout(),
+                    request.insecure(), request.followRedirects(), request.responseType());
+        }
+        Map<String, List<String>> headers = new LinkedHashMap<>(request.headers());
+        headers.keySet().removeIf(name -> name.equalsIgnoreCase("content-type") || name.equalsIgnoreCase("content-length"));
+        return new Request("GET", target, headers, null, request.timeout(), request.insecure(), request.followRedirects(),
+                request.responseType());
+    }
+
+    private Response exchange(Request request, CookieManager cookies, HttpPhaseProbe probe) throws IOException, InterruptedException {
+        HostKey key = HostKey.of(request.uri(), request.insecure());
+        HostPool pool = hosts.computeIfAbsent(key, HostPool::new);
+        Map<String, List<String>> cookieHeaders = cookies.get(request.uri(), Map.of());
+        Semaphore slot = maxConnectionsPerHost > 0 ? acquireSlot(pool.slots) : null;
+        try {
+            Response response = pool.exchange(request, cookieHeaders, probe);
+            cookies.put(response.uri(), response.headers());
+            return response;
+        } finally {
+            if (slot != null) {
+                activeGauge.set(activeRequests.decrementAndGet());
+                slot.release();
+            }
+        }
+    }
+
+    private Semaphore acquireSlot(Semaphore slot) throws InterruptedException {
+        if (!slot.tryAcquire()) {
+            waitingGauge.set(waitingRequests.incrementAndGet());
+            try {
+                slot.acquire();
+            } finally {
+                waitingGauge.set(waitingRequests.decrementAndGet());
+            }
+        }
+        activeGauge.set(activeRequests.incrementAndGet());
+        return slot;
+    }
+
+    /**
+     * The connections to one host: idle HTTP/1.1 connections, or the multiplexed one once the
+     * host negotiated {@code h2}.
+     */
+    private final class HostPool {
+        private final HostKey key;
+        private final Semaphore slots;
+        private final Deque<Channel> idle = new ConcurrentLinkedDeque<>();
+        private volatile Channel http2;
+
+        HostPool(HostKey key) {
+            this.key = key;
+            this.slots = maxConnectionsPerHost > 0 ? new Semaphore(maxConnectionsPerHost, true) : null;
+        }
+
+        Response exchange(Request request, Map<String, List<String>> cookieHeaders, HttpPhaseProbe probe) throws IOException, InterruptedException {
+            Duration timeout = request.timeout() != null ? request.timeout() : DEFAULT_TIMEOUT;
+            for (int attempt = 0; ; attempt++) {
+                Channel parent = http2;
+                if (parent != null && parent.isActive()) {
+                    probe.markConnectionReused();
+                    return exchangeOnStream(parent, request, cookieHeaders, probe, timeout);
+                }
+
+                Channel channel = pollIdle();
+                boolean reused = channel != null;
+                if (reused) {
+                    probe.markConnectionReused();
+                } else {
+                    channel = connect(probe);
+                    if (isHttp2(channel)) {
+                        return exchangeOnStream(adopt(channel), request, cookieHeaders, probe, timeout);
+                    }
+                }
+
+                try {
+                    return exchangeOnConnection(channel, request, cookieHeaders, probe, timeout);
+                } catch (StaleConnectionException e) {
+                    // The server closed an idle connection just as it was reused; a fresh one is safe to try once
+                    if (!reused || attempt > 0) {
+                        throw e;
+                    }
+                }
+            }
+        }
+
+        private Channel pollIdle() {
+            Channel channel;
+            while ((channel = idle.pollFirst()) != null) {
+                if (channel.isActive()) {
+                    return channel;
+                }
+            }
+            return null;
+        }
+
+        private Channel connect(HttpPhaseProbe probe) throws IOException, InterruptedException {
+            Bootstrap bootstrap = new Bootstrap()
+                    .group(group)
+                    .channel(NioSocketChannel.class)
+                    .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                    .option(ChannelOption.TCP_NODELAY, true)
+                    .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) CONNECT_TIMEOUT.toMillis())
+                    .handler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel ch) {
+                            if (key.tls()) {
+                                SslContext context = key.insecure() ? trustingContext : verifyingContext;
+                                ch.pipeline().addLast(context.newHandler(ch.alloc(), key.host(), key.port()));
+                            }
+                        }
+                    });
+
+            probe.markConnectStart();
+            ChannelFuture connected = bootstrap.connect(key.host(), key.port());
+            Channel channel = connected.channel();
+            try {
+                await(connected, CONNECT_TIMEOUT);
+                probe.markConnected();
+                connectionsGauge.set(openConnections.incrementAndGet());
+                channel.closeFuture().addListener(f -> connectionsGauge.set(openConnections.decrementAndGet()));
+
+                SslHandler ssl = channel.pipeline().get(SslHandler.class);
+                if (ssl != null) {
+                    await(ssl.handshakeFuture(), CONNECT_TIMEOUT);
+                    probe.markHandshaken();
+                }
+                if (isHttp2(channel)) {
+                    channel.pipeline().addLast(
+                            Http2FrameCodecBuilder.forClient().initialSettings(Http2Settings.defaultSettings().pushEnabled(false)).build(),
+                            new Http2MultiplexHandler(NO_INBOUND_STREAMS));
+                } else {
+                    channel.pipeline().addLast(new HttpClientCodec(), new ExchangeHandler(key, "HTTP_1_1", session(channel)));
+                }
+                return channel;
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Makes {@code channel} the host's multiplexed connection, unless a concurrent request got there first.
+         */
+        private synchronized Channel adopt(Channel channel) {
+            Channel current = http2;
+            if (current != null && current.isActive()) {
+                channel.close();
+                return current;
+            }
+            http2 = channel;
+            return channel;
+        }
+
+        private Response exchangeOnConnection(Channel channel, Request request, Map<String, List<String>> cookieHeaders,
+                                              HttpPhaseProbe probe, Duration timeout) throws IOException, InterruptedException {
+            ExchangeHandler handler = channel.pipeline().get(ExchangeHandler.class);
+            CompletableFuture<Response> result = handler.begin(request.uri(), request.responseType(), probe);
+            write(channel, toNetty(request, cookieHeaders, false, channel.alloc()), request, probe, result);
+            Response response = await(result, timeout, channel);
+            if (reuseConnections && handler.keepAlive() && channel.isActive()) {
+                idle.offerFirst(channel);
+            } else {
+                channel.close();
+            }
+            return response;
+        }
+
+        private Response exchangeOnStream(Channel parent, Request request, Map<String, List<String>> cookieHeaders,
+                                          HttpPhaseProbe probe, Duration timeout) throws IOException, InterruptedException {
+            Optional<SSLSession> session = session(parent);
+            Http2StreamChannel stream = await(new Http2StreamChannelBootstrap(parent)
+                    .handler(new ChannelInitializer<Http2StreamChannel>() {
+                        @Override
+                        protected void initChannel(Http2StreamChannel ch) {
+                            ch.pipeline().addLast(new Http2StreamFrameToHttpObjectCodec(false), new ExchangeHandler(key, "HTTP_2", session));
+                        }
+                    })
+                    .open(), timeout);
+            try {
+                CompletableFuture<Response> result = stream.pipeline().get(ExchangeHandler.class).begin(request.uri(), request.responseType(), probe);
+                write(stream, toNetty(request, cookieHeaders, true, stream.alloc()), request, probe, result);
+                return await(result, timeout, stream);
+            } finally {
+                stream.close();
+                if (!reuseConnections) {
+                    parent.close();
+                }
+            }
+        }
+
+        private void write(Channel channel, FullHttpRequest message, Request request, HttpPhaseProbe probe, CompletableFuture<Response> result) {
+            probe.markHeadWritten();
+            probe.countSent(request.contentLength());
+            channel.writeAndFlush(message).addListener(f -> {
+                if (f.isSuccess()) {
+                    probe.markBodySent();
+                } else {
+                    result.completeExceptionally(f.cause());
+                    channel.close();
+                }
+            });
+        }
+
+        /**
+         * Builds the request with the body in a pooled buffer, which Netty releases once written.
+         * HTTP/2 takes {@code :authority} and {@code :path} from an absolute-form target.
+         */
+        private FullHttpRequest toNetty(Request request, Map<String, List<String>> cookieHeaders, boolean absoluteForm, ByteBufAllocator alloc) {
+            URI uri = request.uri();
+            String target = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            if (uri.getRawQuery() != null) {
+                target += "?" + uri.getRawQuery();
+            }
+            if (absoluteForm) {
+                target = key.scheme() + "://" + key.authority() + target;
+            }
+            ByteBuf content = request.body() != null
+                    ? alloc.buffer(request.body().length).writeBytes(request.body())
+                    : Unpooled.EMPTY_BUFFER;
+            FullHttpRequest message = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.valueOf(request.method()), target, content);
+            HttpHeaders headers = message.headers();
+            headers.set(HttpHeaderNames.HOST, key.authority());
+            request.headers().forEach(headers::add);
+            cookieHeaders.forEach((name, values) -> {
+                if (!values.isEmpty()) {
+                    headers.add(name, values);
+                }
+            });
+            if (request.body() != null) {
+                HttpUtil.setContentLength(message, content.readableBytes());
+            }
+            if (!reuseConnections) {
+                headers.set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+            }
+            return message;
+        }
+
+        void close() {
+            idle.forEach(Channel::close);
+            idle.clear();
+            Channel parent = http2;
+            if (parent != null) {
+                parent.close();
+            }
+        }
+    }
+
+    private static boolean isHttp2(Channel channel) {
+        SslHandler ssl = channel.pipeline().get(SslHandler.class);
+        return ssl != null && ApplicationProtocolNames.HTTP_2.equals(ssl.applicationProtocol());
+    }
+
+    private static Optional<SSLSession> session(Channel channel) {
+        SslHandler ssl = channel.pipeline().get(SslHandler.class);
+        return ssl != null ? Optional.of(ssl.engine().getSession()) : Optional.empty();
+    }
+
+    private static String header(Map<String, List<String>> headers, String name) {
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(name) && !entry.getValue().isEmpty()) {
+                return entry.getValue().getFirst();
+            }
+        }
+        return null;
+    }
+
+    private static <T> T await(Future<T> future, Duration timeout) throws IOException, InterruptedException {
+        if (!future.await(timeout.toMillis())) {
+            future.cancel(false);
+            throw new HttpTimeoutException("Timed out after " + timeout.toMillis() + "ms");
+        }
+        if (!future.isSuccess()) {
+            throw future.cause() instanceof IOException io ? io : new IOException(future.cause());
+        }
+        return future.getNow();
+    }
+
+    private static Response await(CompletableFuture<Response> result, Duration timeout, Channel channel) throws IOException, InterruptedException {
+        try {
+            return result.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            channel.close();
+            throw new HttpTimeoutException("Request timed out after " + timeout.toMillis() + "ms");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Thrown when a connection closes before any part of the response arrived.
+     */
+    private static final class StaleConnectionException extends IOException {
+        StaleConnectionException() {
+            super("Connection closed before the response arrived");
+        }
+    }
+
+    /**
+     * Reads one response at a time from its channel into a pooled composite buffer and reports
+     * its progress to the request's probe. Discarded bodies are only counted; their buffers go
+     * straight back to the pool.
+     */
+    private static final class ExchangeHandler extends SimpleChannelInboundHandler<HttpObject> {
+        private final HostKey key;
+        private final String protocol;
+        private final Optional<SSLSession> session;
+        // Set by the VU thread before the request is written, read on the event loop after
+        private URI uri;
+        private boolean discardBody;
+        private HttpPhaseProbe probe;
+        private CompletableFuture<Response> result;
+        private HttpResponse head;
+        private CompositeByteBuf body;
+        private volatile boolean keepAlive;
+
+        ExchangeHandler(HostKey key, String protocol, Optional<SSLSession> session) {
+            this.key = key;
+            this.protocol = protocol;
+            this.session = session;
+        }
+
+        CompletableFuture<Response> begin(URI uri, ResponseType responseType, HttpPhaseProbe probe) {
+            this.uri = uri;
+            this.discardBody = responseType == ResponseType.NONE;
+            this.probe = probe;
+            this.result = new CompletableFuture<>();
+            return result;
+        }
+
+        boolean keepAlive() {
+            return keepAlive;
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, HttpObject msg) {
+            if (result == null) {
+                return;
+            }
+            if (msg instanceof HttpResponse response) {
+                if (head == null) {
+                    probe.markResponseStart();
+                }
+                head = response;
+                releaseBody();
+                if (!discardBody) {
+                    body = ctx.alloc().compositeBuffer();
+                }
+            }
+            if (msg instanceof HttpContent content && head != null) {
+                ByteBuf bytes = content.content();
+                if (bytes.isReadable()) {
+                    probe.countReceived(bytes.readableBytes());
+                    if (body != null) {
+                        body.addComponent(true, bytes.retain());
+                    }
+                }
+            }
+            if (msg instanceof LastHttpContent && head != null) {
+                // Informational responses precede the real one on the same exchange
+                if (head.status().codeClass() == HttpStatusClass.INFORMATIONAL) {
+                    return;
+                }
+                probe.markResponseEnd();
+                complete();
+            }
+        }
+
+        private void complete() {
+            byte[] bytes = body != null ? ByteBufUtil.getBytes(body) : null;
+            Map<String, List<String>> headers = new LinkedHashMap<>();
+            for (String name : head.headers().names()) {
+                headers.put(name, head.headers().getAll(name));
+            }
+            keepAlive = HttpUtil.isKeepAlive(head);
+            CompletableFuture<Response> done = result;
+            Response response = new Response(head.status().code(), protocol, headers, bytes,
+                    HttpUtil.getCharset(head, StandardCharsets.UTF_8), session, uri);
+            releaseBody();
+            head = null;
+            result = null;
+            done.complete(response);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            fail(head == null ? new StaleConnectionException() : new IOException("Connection to " + key.authority() + " closed mid-response"));
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            fail(cause instanceof IOException io ? io : new IOException(cause));
+            ctx.close();
+        }
+
+        private void fail(IOException error) {
+            releaseBody();
+            head = null;
+            if (result != null) {
+                CompletableFuture<Response> pending = result;
+                result = null;
+                pending.completeExceptionally(error);
+            }
+        }
+
+        private void releaseBody() {
+            if (body != null) {
+                body.release();
+                body = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.wilhg.lyocell.modules;
+
+import com.wilhg.lyocell.metrics.GaugeMetric;
+import com.wilhg.lyocell.metrics.MetricsCollector;
+
+/**
+ * A connection pool gauge, resolved when first set so tests without HTTP traffic do not
+ * report it, and kept afterwards so updates on the request path skip the registry.
+ */
+final class PoolGauge {
+    private final MetricsCollector metricsCollector;
+    private final String name;
+    private volatile GaugeMetric gauge;
+
+    PoolGauge(MetricsCollector metricsCollector, String name) {
+        this.metricsCollector = metricsCollector;
+        this.name = name;
+    }
+
+    void set(int value) {
+        if (metricsCollector == null) return;
+        GaugeMetric current = gauge;
+        if (current == null) {
+            // Racing threads resolve the same handle
+            current = metricsCollector.gauge(name);
+            gauge = current;
+        }
+        current.set(value);
+    }
+}
@@ -1,6 +1,7 @@
 package com.wilhg.lyocell.modules;
 
 import com.wilhg.lyocell.engine.JsEngine;
+import com.wilhg.lyocell.engine.TimerWheel;
 import org.graalvm.polyglot.Context;
 import org.graalvm.polyglot.HostAccess;
 import org.graalvm.polyglot.Value;
@@ -8,11 +9,28 @@ import org.graalvm.polyglot.Value;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * {@code setTimeout}/{@code setInterval} on the shared {@link TimerWheel}: a timer is an entry
+ * in the wheel, and firing only queues its callback on the VU's event loop.
+ */
 public class TimersModule implements LyocellModule {
     private final AtomicLong timerIdCounter = new AtomicLong();
-    private final ConcurrentHashMap<Long, Thread> activeTimers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Timer> activeTimers = new ConcurrentHashMap<>();
+    private final TimerWheel wheel = TimerWheel.shared();
     private JsEngine jsEngine;
 
+    /**
+     * A scheduled timer; an interval's {@code timeout} moves on each time it fires.
+     */
+    private static final class Timer {
+        final boolean interval;
+        volatile TimerWheel.Timeout timeout;
+
+        Timer(boolean interval) {
+            this.interval = interval;
+        }
+    }
+
     @Override
     public String getName() {
         return "lyocell/timers";
@@ -38,68 +56,68 @@ public class TimersModule implements LyocellModule {
 
     @Override
     public void close() {
-        for (Thread thread : activeTimers.values()) {
-            thread.interrupt();
+        for (Timer timer : activeTimers.values()) {
+            timer.timeout.cancel();
         }
         activeTimers.clear();
     }
 
+    /**
+     * Schedules {@code callback}; the iteration waits for it unless it is cleared first.
+     */
     @HostAccess.Export
     public long setTimeout(Value callback, long delay, Value args) {
         long id = timerIdCounter.incrementAndGet();
-        Thread thread = Thread.ofVirtual().start(() -> {
-            try {
-                Thread.sleep(delay);
-                if (activeTimers.containsKey(id)) {
-                    jsEngine.executeAsync(() -> {
-                        if (activeTimers.containsKey(id)) {
-                            callback.execute(args);
-                        }
-                    });
-                }
-            } catch (InterruptedException e) {
-                // Timer cancelled
-            } finally {
-                activeTimers.remove(id);
+        Timer timer = new Timer(false);
+        jsEngine.beginOperation();
+        activeTimers.put(id, timer);
+        timer.timeout = wheel.schedule(delay, () -> {
+            // Whoever removes the timer ends its operation, firing or clearing
+            if (activeTimers.remove(id) != null) {
+                jsEngine.completeOperation(() -> callback.execute(args));
             }
         });
-        activeTimers.put(id, thread);
         return id;
     }
 
     @HostAccess.Export
     public void clearTimeout(long id) {
-        Thread thread = activeTimers.remove(id);
-        if (thread != null) {
-            thread.interrupt();
+        Timer timer = activeTimers.remove(id);
+        if (timer != null) {
+            timer.timeout.cancel();
+            // Only timeouts were registered with the event loop
+            if (!timer.interval) {
+                jsEngine.cancelOperation();
+            }
         }
     }
 
+    /**
+     * Schedules {@code callback} repeatedly. Unlike timeouts, intervals do not keep an iteration
+     * alive: VUs are not interrupted at the end of a test, so an interval that is never cleared
+     * would otherwise block its VU for good.
+     */
     @HostAccess.Export
     public long setInterval(Value callback, long delay, Value args) {
         long id = timerIdCounter.incrementAndGet();
-        Thread thread = Thread.ofVirtual().start(() -> {
-            try {
-                while (!Thread.currentThread().isInterrupted()) {
-                    Thread.sleep(delay);
-                    if (activeTimers.containsKey(id)) {
-                        jsEngine.executeAsync(() -> {
-                            if (activeTimers.containsKey(id)) {
-                                callback.execute(args);
-                            }
-                        });
-                    } else {
-                        break;
-                    }
-                }
-            } catch (InterruptedException e) {
-                // Timer cancelled
-            } finally {
-                activeTimers.remove(id);
+        Timer timer = new Timer(true);
+        activeTimers.put(id, timer);
+        scheduleInterval(id, timer, callback, Math.max(1, delay), args);
+        return id;
+    }
+
+    private void scheduleInterval(long id, Timer timer, Value callback, long delay, Value args) {
+        timer.timeout = wheel.schedule(delay, () -> {
+            if (activeTimers.get(id) != timer) {
+                return;
             }
+            jsEngine.executeAsync(() -> {
+                if (activeTimers.containsKey(id)) {
+                    callback.execute(args);
+                }
+            });
+            scheduleInterval(id, timer, callback, delay, args);
         });
-        activeTimers.put(id, thread);
-        return id;
     }
 
     @HostAccess.Export
@@ -107,4 +125,3 @@ public class TimersModule implements LyocellModule {
         clearTimeout(id);
     }
 }
-
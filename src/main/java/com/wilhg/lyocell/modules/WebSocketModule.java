@@ -1,5 +1,6 @@
 package com.wilhg.lyocell.modules;
 
+import com.wilhg.lyocell.metrics.MetricsCollector;
 import org.graalvm.polyglot.Context;
 import org.graalvm.polyglot.HostAccess;
 import org.graalvm.polyglot.Value;
@@ -14,10 +15,17 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 
 public class WebSocketModule implements LyocellModule {
+    // Handshake lines the client and server add beyond the request line, host and user headers
+    private static final long UPGRADE_REQUEST_HEADERS = HttpWireSize.utf8(
+            "Upgrade: websocket\r\nConnection: Upgrade\r\nSec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\nSec-WebSocket-Version: 13\r\n\r\n");
+    private static final long UPGRADE_RESPONSE = HttpWireSize.utf8(
+            "HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\nSec-WebSocket-Accept: s3pPLMBiTxaQ9kYGzzhZRbK+xOo=\r\n\r\n");
+
     private final HttpClient client = HttpClient.newBuilder()
             .connectTimeout(Duration.ofSeconds(10))
             .build();
     private Context context;
+    private MetricsCollector metricsCollector;
 
     @Override
     public String getName() {
@@ -36,29 +44,43 @@ public class WebSocketModule implements LyocellModule {
     @Override
     public void install(Context context, ModuleContext moduleContext) {
         this.context = context;
+        this.metricsCollector = moduleContext.metricsCollector();
         context.getBindings("js").putMember("LyocellWs", this);
     }
 
     @HostAccess.Export
     public Object connect(String url, Value params, Value callback) {
         CompletableFuture<WebSocketResponse> future = new CompletableFuture<>();
-        
+        // Frames arrive on client threads, so resolve the scenario's counters now
+        MetricsCollector.DataCounters data = metricsCollector != null ? metricsCollector.dataCounters() : null;
+        URI uri = URI.create(url);
+
         WebSocket.Builder builder = client.newWebSocketBuilder();
+        long handshakeSize = HttpWireSize.utf8("GET " + (uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath())
+                + (uri.getRawQuery() != null ? "?" + uri.getRawQuery() : "") + " HTTP/1.1\r\nHost: " + uri.getRawAuthority() + "\r\n")
+                + UPGRADE_REQUEST_HEADERS;
         if (params != null && params.hasMember("headers")) {
             Value headers = params.getMember("headers");
             for (String key : headers.getMemberKeys()) {
-                builder.header(key, headers.getMember(key).asString());
+                String value = headers.getMember(key).asString();
+                builder.header(key, value);
+                handshakeSize += HttpWireSize.utf8(key) + HttpWireSize.utf8(value) + 4;
             }
         }
+        long requestSize = handshakeSize;
 
-        builder.buildAsync(URI.create(url), new WebSocket.Listener() {
+        builder.buildAsync(uri, new WebSocket.Listener() {
             private final Map<String, Value> handlers = new HashMap<>();
             private WebSocket webSocket;
 
             @Override
             public void onOpen(WebSocket webSocket) {
                 this.webSocket = webSocket;
-                SocketWrapper wrapper = new SocketWrapper(webSocket, handlers);
+                if (data != null) {
+                    data.sent().increment(requestSize);
+                    data.received().increment(UPGRADE_RESPONSE);
+                }
+                SocketWrapper wrapper = new SocketWrapper(webSocket, handlers, data);
                 if (callback != null && callback.canExecute()) {
                     callback.execute(wrapper);
                 }
@@ -70,11 +92,15 @@ public class WebSocketModule implements LyocellModule {
             }
 
             @Override
-            public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            public CompletionStage<?> onText(WebSocket webSocket, CharSequence text, boolean last) {
+                if (data != null) {
+                    long payload = HttpWireSize.utf8(text);
+                    data.received().increment(last ? frameSize(payload, false) : payload);
+                }
                 if (handlers.containsKey("message")) {
-                    handlers.get("message").execute(data.toString());
+                    handlers.get("message").execute(text.toString());
                 }
-                return WebSocket.Listener.super.onText(webSocket, data, last);
+                return WebSocket.Listener.super.onText(webSocket, text, last);
             }
 
             @Override
@@ -101,6 +127,14 @@ public class WebSocketModule implements LyocellModule {
         }
     }
 
+    /**
+     * Size of a frame carrying {@code payload} bytes; frames from the client are masked.
+     */
+    static long frameSize(long payload, boolean masked) {
+        long header = 2 + (payload > 65535 ? 8 : payload > 125 ? 2 : 0);
+        return header + (masked ? 4 : 0) + payload;
+    }
+
     public static class WebSocketResponse {
         @HostAccess.Export public final int status;
         public WebSocketResponse(int status) { this.status = status; }
@@ -109,10 +143,12 @@ public class WebSocketModule implements LyocellModule {
     public static class SocketWrapper {
         private final WebSocket webSocket;
         private final Map<String, Value> handlers;
+        private final MetricsCollector.DataCounters data;
 
-        public SocketWrapper(WebSocket webSocket, Map<String, Value> handlers) {
+        public SocketWrapper(WebSocket webSocket, Map<String, Value> handlers, MetricsCollector.DataCounters data) {
             this.webSocket = webSocket;
             this.handlers = handlers;
+            this.data = data;
         }
 
         @HostAccess.Export
@@ -121,13 +157,20 @@ public class WebSocketModule implements LyocellModule {
         }
 
         @HostAccess.Export
-        public void send(String data) {
-            webSocket.sendText(data, true);
+        public void send(String text) {
+            webSocket.sendText(text, true);
+            if (data != null) {
+                data.sent().increment(frameSize(HttpWireSize.utf8(text), true));
+            }
         }
 
         @HostAccess.Export
         public void close() {
             webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "ok");
+            if (data != null) {
+                // Status code plus reason
+                data.sent().increment(frameSize(2 + 2, true));
+            }
         }
     }
 }
@@ -7,14 +7,20 @@ import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
+import com.wilhg.lyocell.metrics.HttpTimings;
 import com.wilhg.lyocell.metrics.MetricSummary;
+import com.wilhg.lyocell.metrics.MetricTimeSeries;
 import com.wilhg.lyocell.metrics.MetricsCollector;
+import com.wilhg.lyocell.metrics.SummaryReporter;
 import com.wilhg.lyocell.metrics.TimeSeriesData;
-
-import io.micrometer.core.instrument.Meter;
+import com.wilhg.lyocell.metrics.TrendHistogram;
 
 public class HtmlReportRenderer {
 
@@ -231,6 +237,17 @@ public class HtmlReportRenderer {
                     opacity: 1;
                 }
 
+                /* Per-metric time series */
+                .series-chart { position: relative; height: 180px; margin: 10px 0 30px; border-left: 1px solid var(--border); border-bottom: 1px solid var(--border); }
+                .series-svg { width: 100%; height: 100%; display: block; overflow: visible; }
+                .series-line { fill: none; stroke-width: 2; vector-effect: non-scaling-stroke; }
+                .series-axis { position: absolute; font-size: 0.7rem; color: #777; white-space: nowrap; }
+                .series-legend { display: flex; flex-wrap: wrap; gap: 16px; }
+
+                /* HTTP request phases */
+                .phase-bar { display: flex; height: 28px; border-radius: 6px; overflow: hidden; margin-bottom: 16px; }
+                .phase-segment { height: 100%; min-width: 2px; }
+
                 /* Table */
                 table { width: 100%; border-collapse: collapse; margin-top: 10px; }
                 th { text-align: left; padding: 12px; border-bottom: 2px solid var(--border); font-size: 0.85rem; color: #555; font-weight: 700; text-transform: uppercase; letter-spacing: 0.5px; }
@@ -335,10 +352,10 @@ public class HtmlReportRenderer {
     }
 
     private String renderCharts(MetricsCollector collector, java.util.SequencedCollection<TimeSeriesData> timelineData) {
-        List<MetricSummary> trendSummaries = collector.getRegistry().getMeters().stream()
-                .filter(m -> m.getId().getType() == Meter.Type.DISTRIBUTION_SUMMARY)
-                .map(m -> collector.getTrendSummary(m.getId().getName()))
-                .sorted(Comparator.comparingDouble(MetricSummary::p95).reversed())
+        // Request phases have their own breakdown below
+        List<String> slowestTrends = collector.getTrendNames().stream()
+                .filter(name -> !HttpTimings.PHASE_METRICS.contains(name))
+                .sorted(Comparator.comparingDouble((String name) -> collector.getTrendSummary(name).p95()).reversed())
                 .limit(6)
                 .toList();
 
@@ -348,21 +365,15 @@ public class HtmlReportRenderer {
             chartHtml.append(renderTimelineChart(timelineData));
         }
 
-        if (!trendSummaries.isEmpty()) {
-            double maxP95 = trendSummaries.stream().mapToDouble(MetricSummary::p95).max().orElse(1.0);
+        chartHtml.append(renderSeriesCharts(collector, slowestTrends));
+        chartHtml.append(renderHttpPhases(collector));
+        chartHtml.append(renderNetworkByScenario(collector));
+
+        if (!slowestTrends.isEmpty()) {
+            double maxP95 = Math.max(collector.getTrendSummary(slowestTrends.getFirst()).p95(), 1.0);
             
             StringBuilder bars = new StringBuilder();
-             List<Meter> sortedMeters = collector.getRegistry().getMeters().stream()
-                    .filter(m -> m.getId().getType() == Meter.Type.DISTRIBUTION_SUMMARY)
-                    .sorted((m1, m2) -> Double.compare(
-                            collector.getTrendSummary(m2.getId().getName()).p95(),
-                            collector.getTrendSummary(m1.getId().getName()).p95()
-                    ))
-                    .limit(6)
-                    .toList();
-
-            for (Meter meter : sortedMeters) {
-                String name = meter.getId().getName();
+            for (String name : slowestTrends) {
                 MetricSummary s = collector.getTrendSummary(name);
                 double heightPct = (s.p95() / maxP95) * 100;
                 
@@ -452,25 +463,202 @@ public class HtmlReportRenderer {
             """.formatted(svg, barsHtml.toString());
     }
 
-    private String renderDetailedTable(MetricsCollector collector) {
+    /**
+     * Renders the average HTTP request as a stacked bar of its phases.
+     */
+    private String renderHttpPhases(MetricsCollector collector) {
+        List<String> phases = HttpTimings.PHASE_METRICS;
+        double[] averages = new double[phases.size()];
+        double total = 0;
+        for (int i = 0; i < phases.size(); i++) {
+            TrendHistogram trend = collector.getTrend(phases.get(i));
+            averages[i] = trend != null ? trend.avg() : 0;
+            total += averages[i];
+        }
+        if (total <= 0) {
+            return "";
+        }
+
+        StringBuilder segments = new StringBuilder();
+        StringBuilder legend = new StringBuilder();
+        for (int i = 0; i < phases.size(); i++) {
+            String color = SERIES_COLORS[i % SERIES_COLORS.length];
+            String label = phases.get(i).substring("http_req_".length());
+            segments.append(String.format(Locale.US,
+                    "<div class=\"phase-segment\" style=\"width: %.2f%%; background: %s;\" title=\"%s: %.2f ms\"></div>",
+                    averages[i] / total * 100, color, label, averages[i]));
+            legend.append(String.format(Locale.US,
+                    "<span><span style=\"color: %s;\">&#9632;</span> %s %.2f ms</span>", color, label, averages[i]));
+        }
+
+        return """
+            <div class="card">
+                <h2>HTTP Request Phases (avg ms)</h2>
+                <div class="phase-bar">%s</div>
+                <div class="series-legend">%s</div>
+            </div>
+            <br>
+            """.formatted(segments, legend);
+    }
+
+    /**
+     * Renders bytes sent and received per scenario.
+     */
+    private String renderNetworkByScenario(MetricsCollector collector) {
+        Map<String, Double> sent = collector.getCounterValuesByTag("data_sent", "scenario");
+        Map<String, Double> received = collector.getCounterValuesByTag("data_received", "scenario");
+        TreeSet<String> scenarios = new TreeSet<>(sent.keySet());
+        scenarios.addAll(received.keySet());
+        if (scenarios.isEmpty()) {
+            return "";
+        }
+
         StringBuilder rows = new StringBuilder();
-        
-        for (Meter meter : collector.getRegistry().getMeters()) {
-             if (meter.getId().getType() == Meter.Type.DISTRIBUTION_SUMMARY) {
-                String name = meter.getId().getName();
-                MetricSummary s = collector.getTrendSummary(name);
-                rows.append(String.format(Locale.US,
-                    """
+        for (String scenario : scenarios) {
+            rows.append("<tr><td style=\"font-weight: 600;\">").append(scenario).append("</td>")
+                    .append("<td class=\"num\">").append(SummaryReporter.formatBytes(sent.getOrDefault(scenario, 0.0))).append("</td>")
+                    .append("<td class=\"num\">").append(SummaryReporter.formatBytes(received.getOrDefault(scenario, 0.0))).append("</td></tr>\n");
+        }
+
+        return """
+            <div class="card">
+            <h2>Network by Scenario</h2>
+            <table>
+                <thead>
                     <tr>
-                        <td style="font-weight: 600;">%s</td>
-                        <td class="num">%.2f</td>
-                        <td class="num">%.2f</td>
-                        <td class="num">%.2f</td>
-                        <td class="num">%.2f</td>
-                        <td class="num">%d</td>
+                        <th>Scenario</th>
+                        <th class="num">data_sent</th>
+                        <th class="num">data_received</th>
                     </tr>
-                    """, name, s.avg(), s.max(), s.p95(), s.p99(), s.count()));
+                </thead>
+                <tbody>
+                    %s
+                </tbody>
+            </table>
+            </div>
+            <br>
+            """.formatted(rows);
+    }
+
+    private static final String[] SERIES_COLORS = {"#0061ff", "#e74c3c", "#2ecc71", "#f39c12", "#8e44ad", "#16a085"};
+
+    /**
+     * Renders how throughput, trend p95 values and active VUs evolved, one interval per point.
+     */
+    private String renderSeriesCharts(MetricsCollector collector, List<String> trendNames) {
+        double intervalSeconds = collector.getTimeSeriesResolution().toMillis() / 1000.0;
+        StringBuilder html = new StringBuilder();
+
+        html.append(renderLineChart("Throughput (per second)", perSecond(collector, List.of("http_reqs", "iterations"), intervalSeconds)));
+        html.append(renderLineChart("Network Throughput (bytes per second)", perSecond(collector, List.of("data_sent", "data_received"), intervalSeconds)));
+
+        Map<String, Map<Long, Double>> latency = new LinkedHashMap<>();
+        for (String trend : trendNames) {
+            Map<Long, Double> points = new TreeMap<>();
+            for (MetricTimeSeries.IntervalData interval : collector.getTimeSeries(trend)) {
+                points.put(interval.timestamp(), interval.percentile(95));
+            }
+            if (!points.isEmpty()) {
+                latency.put(trend, points);
+            }
+        }
+        html.append(renderLineChart("p95 Over Time (ms)", latency));
+
+        Map<Long, Double> vus = new TreeMap<>();
+        for (MetricTimeSeries.IntervalData interval : collector.getTimeSeries("vus")) {
+            vus.put(interval.timestamp(), interval.max());
+        }
+        if (!vus.isEmpty()) {
+            html.append(renderLineChart("Active VUs", Map.of("vus", vus)));
+        }
+        return html.toString();
+    }
+
+    private Map<String, Map<Long, Double>> perSecond(MetricsCollector collector, List<String> counters, double intervalSeconds) {
+        Map<String, Map<Long, Double>> series = new LinkedHashMap<>();
+        for (String counter : counters) {
+            Map<Long, Double> points = new TreeMap<>();
+            for (MetricTimeSeries.IntervalData interval : collector.getTimeSeries(counter)) {
+                points.put(interval.timestamp(), interval.sum() / intervalSeconds);
             }
+            if (!points.isEmpty()) {
+                series.put(counter, points);
+            }
+        }
+        return series;
+    }
+
+    private String renderLineChart(String title, Map<String, Map<Long, Double>> series) {
+        if (series.isEmpty()) {
+            return "";
+        }
+
+        TreeSet<Long> timestamps = new TreeSet<>();
+        double maxValue = 0;
+        for (Map<Long, Double> points : series.values()) {
+            timestamps.addAll(points.keySet());
+            for (double value : points.values()) {
+                maxValue = Math.max(maxValue, value);
+            }
+        }
+        maxValue = Math.max(maxValue, 1e-9);
+        List<Long> axis = List.copyOf(timestamps);
+        int n = axis.size();
+
+        StringBuilder paths = new StringBuilder();
+        StringBuilder legend = new StringBuilder();
+        int colorIndex = 0;
+        for (Map.Entry<String, Map<Long, Double>> entry : series.entrySet()) {
+            String color = SERIES_COLORS[colorIndex++ % SERIES_COLORS.length];
+            StringBuilder d = new StringBuilder();
+            for (int i = 0; i < n; i++) {
+                double value = entry.getValue().getOrDefault(axis.get(i), 0.0);
+                d.append(i == 0 ? "M " : "L ")
+                        .append(String.format(Locale.US, "%.2f %.2f ", i + 0.5, 100 - value / maxValue * 100));
+            }
+            paths.append(String.format(Locale.US, "<path class=\"series-line\" stroke=\"%s\" d=\"%s\" />%n", color, d));
+            legend.append(String.format(Locale.US,
+                    "<div class=\"legend-item\"><span class=\"dot\" style=\"background: %s\"></span> %s</div>",
+                    color, entry.getKey()));
+        }
+
+        DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.of("UTC"));
+        return String.format(Locale.US,
+            """
+            <div class="card">
+                <h2>%s</h2>
+                <div class="series-legend">%s</div>
+                <div class="series-chart">
+                    <span class="series-axis" style="top: -4px; left: 6px;">%.2f</span>
+                    <svg class="series-svg" viewBox="0 0 %d 100" preserveAspectRatio="none">
+                        %s
+                    </svg>
+                    <span class="series-axis" style="bottom: -22px; left: 0;">%s</span>
+                    <span class="series-axis" style="bottom: -22px; right: 0;">%s</span>
+                </div>
+            </div>
+            <br>
+            """, title, legend, maxValue, n, paths,
+            timeFormatter.format(Instant.ofEpochMilli(axis.getFirst())),
+            timeFormatter.format(Instant.ofEpochMilli(axis.getLast())));
+    }
+
+    private String renderDetailedTable(MetricsCollector collector) {
+        StringBuilder rows = new StringBuilder();
+        
+        List<String> stats = collector.getSummaryTrendStats();
+        StringBuilder headers = new StringBuilder();
+        for (String stat : stats) {
+            headers.append("<th class=\"num\">").append(stat).append("</th>");
+        }
+
+        for (String name : collector.getTrendNames()) {
+            TrendHistogram trend = collector.getTrend(name);
+            rows.append("<tr><td style=\"font-weight: 600;\">").append(name).append("</td>");
+            for (String stat : stats) {
+                rows.append(String.format(Locale.US, "<td class=\"num\">%.2f</td>", trend.stat(stat)));
+            }
+            rows.append("<td class=\"num\">").append(trend.count()).append("</td></tr>\n");
         }
 
         return """
@@ -480,10 +668,7 @@ public class HtmlReportRenderer {
                 <thead>
                     <tr>
                         <th>Metric Name</th>
-                        <th class="num">Avg</th>
-                        <th class="num">Max</th>
-                        <th class="num">p95</th>
-                        <th class="num">p99</th>
+                        %s
                         <th class="num">Count</th>
                     </tr>
                 </thead>
@@ -492,7 +677,7 @@ public class HtmlReportRenderer {
                 </tbody>
             </table>
             </div>
-            """.formatted(rows.toString());
+            """.formatted(headers.toString(), rows.toString());
     }
     
     private String renderFooter() {
@@ -99,6 +99,47 @@ class Phase8IntegrationTest {
         assertTrue(helper.getCount("constant") > 5);
     }
 
+    @Test
+    void testConstantArrivalRateReusesVusAndDropsWhenSaturated() throws Exception {
+        Path script = tempDir.resolve("arrival_rate.js");
+        Files.writeString(script, """
+            import { sleep } from 'lyocell';
+            const helper = globalThis.TestHelper;
+            helper.increment('init');
+
+            export const options = {
+                scenarios: {
+                    open: {
+                        executor: 'constant-arrival-rate',
+                        rate: 20,
+                        timeUnit: '1s',
+                        duration: '1s',
+                        preAllocatedVUs: 1,
+                        maxVUs: 2
+                    }
+                }
+            };
+
+            export default function() {
+                helper.increment('iteration');
+                sleep(0.5);
+            }
+            """);
+
+        TestHelper helper = new TestHelper();
+        TestEngine engine = new TestEngine(Map.of("TestHelper", helper), Collections.emptyList());
+
+        engine.run(script, new TestConfig(1, 1));
+
+        // 1 setup context + at most maxVUs VU contexts, never one per iteration
+        assertTrue(helper.getCount("init") <= 3, "VUs should be reused across iterations");
+        assertTrue(helper.getCount("iteration") > 0);
+        assertTrue(engine.getMetricsCollector().getCounterValue("dropped_iterations") > 0,
+                "Iterations beyond maxVUs capacity should be dropped");
+        assertTrue(engine.getMetricsCollector().getTrendSummary("iteration_duration_corrected").count() > 0,
+                "Open-model iterations should also be timed from their scheduled start");
+    }
+
     public static class TestHelper {
         private final Map<String, AtomicInteger> counters = new ConcurrentHashMap<>();
 
@@ -5,8 +5,15 @@ import org.junit.jupiter.api.io.TempDir;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.graalvm.polyglot.Source;
+
+import com.wilhg.lyocell.metrics.MetricsBuffer;
 import com.wilhg.lyocell.metrics.MetricsCollector;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -61,6 +68,106 @@ class JsEngineTest {
         }
     }
 
+    @Test
+    void testSleepRunsEventsAsTheyArrive() throws IOException {
+        Path script = tempDir.resolve("sleep_events.js");
+        Files.writeString(script, """
+            import { sleep } from 'lyocell';
+            import { setTimeout } from 'lyocell/timers';
+            export default function() {
+                const start = Date.now();
+                setTimeout(() => { globalThis.firedAfter = Date.now() - start; }, 20);
+                sleep(0.3);
+                globalThis.sleptFor = Date.now() - start;
+            }
+            """);
+
+        TestEngine testEngine = new TestEngine(Collections.emptyList());
+        try (JsEngine engine = new JsEngine(Collections.emptyMap(), new MetricsCollector(), testEngine)) {
+            engine.runScript(script);
+            engine.executeDefault(null);
+            assertTrue(engine.eval("globalThis.firedAfter").asLong() < 250, "Timer should run while the VU sleeps");
+            assertTrue(engine.eval("globalThis.sleptFor").asLong() >= 300, "An event must not cut the sleep short");
+        }
+    }
+
+    @Test
+    void testSleepFlushesBufferedMetrics() throws IOException {
+        Path script = tempDir.resolve("sleep_flush.js");
+        Files.writeString(script, """
+            import { sleep } from 'lyocell';
+            import { Counter } from 'lyocell/metrics';
+            const reqs = new Counter('reqs');
+            export default function() {
+                reqs.add(1);
+                sleep(0.3);
+            }
+            """);
+
+        MetricsCollector collector = new MetricsCollector();
+        collector.configureBuffering(Duration.ofMillis(100));
+        MetricsBuffer buffer = collector.newBuffer();
+        TestEngine testEngine = new TestEngine(Collections.emptyList());
+        try (JsEngine engine = new JsEngine(Collections.emptyMap(), collector, testEngine)) {
+            engine.runScript(script);
+            ScopedValue.where(ExecutionContext.CURRENT, new ExecutionContext(1, 0, ExecutionContext.DEFAULT_SCENARIO, buffer))
+                    .run(() -> engine.executeDefault(null));
+            // The sleep outlasts the flush interval, so the sample was merged before the VU parked
+            assertEquals(1, collector.getCounterValue("reqs"));
+        }
+    }
+
+    @Test
+    void testScriptSourceSharedAcrossVus() throws IOException {
+        Path script = tempDir.resolve("shared_source.js");
+        Files.writeString(script, """
+            import http from 'lyocell/http';
+            export default function() {}
+            """);
+
+        // Records what each VU is handed, so both can be checked to get the very same objects
+        List<Source> scripts = new CopyOnWriteArrayList<>();
+        List<byte[]> httpModules = new CopyOnWriteArrayList<>();
+        SourceCache cache = new SourceCache() {
+            @Override
+            public Source getScript(Path scriptPath) throws IOException {
+                Source source = super.getScript(scriptPath);
+                scripts.add(source);
+                return source;
+            }
+
+            @Override
+            public byte[] getModule(String name, MetricsCollector metricsCollector) {
+                byte[] module = super.getModule(name, metricsCollector);
+                if (name.endsWith("lyocell/http")) {
+                    httpModules.add(module);
+                }
+                return module;
+            }
+        };
+        TestEngine testEngine = new TestEngine(Collections.emptyList()) {
+            @Override
+            public SourceCache getSourceCache() {
+                return cache;
+            }
+        };
+
+        try (JsEngine first = new JsEngine(Collections.emptyMap(), new MetricsCollector(), testEngine);
+             JsEngine second = new JsEngine(Collections.emptyMap(), new MetricsCollector(), testEngine)) {
+            first.runScript(script);
+            int firstModuleLoads = httpModules.size();
+            second.runScript(script);
+            assertTrue(second.hasExport("default"));
+
+            assertEquals(2, scripts.size());
+            assertSame(scripts.get(0), scripts.get(1), "Both VUs should run the cached script Source");
+            assertTrue(TestEngine.getSharedEngine().getCachedSources().contains(scripts.getFirst()),
+                    "The script should be parsed into the engine shared by the VU contexts");
+            assertTrue(firstModuleLoads > 0 && httpModules.size() > firstModuleLoads, "Both VUs should load lyocell/http through the cache");
+            assertTrue(httpModules.stream().allMatch(module -> module == httpModules.getFirst()), "Both VUs should get the cached module source");
+        }
+    }
+
     @Test
     void testParseJsonWithSingleQuotes() {
         TestEngine testEngine = new TestEngine(Collections.emptyList());
@@ -88,4 +195,56 @@ class JsEngineTest {
             assertTrue(val.getMember("meta").getMember("active").asBoolean());
         }
     }
+
+    @Test
+    void testIterationWaitsForPendingTimeoutsAndPromises() throws IOException {
+        Path script = tempDir.resolve("event_loop.js");
+        Files.writeString(script, """
+            import { setTimeout, setInterval } from 'lyocell/timers';
+            globalThis.steps = [];
+            setInterval(() => {}, 1000);
+            const delay = (ms) => new Promise((resolve) => setTimeout(resolve, ms));
+            export default async function() {
+                setTimeout(() => globalThis.steps.push('timeout'), 100);
+                await delay(20);
+                globalThis.steps.push('awaited');
+            }
+            export async function failing() {
+                await delay(10);
+                throw new Error('boom');
+            }
+            """);
+
+        TestEngine testEngine = new TestEngine(Collections.emptyList());
+        try (JsEngine engine = new JsEngine(Collections.emptyMap(), new MetricsCollector(), testEngine)) {
+            engine.runScript(script);
+            long start = System.currentTimeMillis();
+            engine.executeDefault(null);
+            assertTrue(System.currentTimeMillis() - start < 1000, "A pending interval should not hold the iteration");
+            assertEquals("awaited,timeout", engine.eval("globalThis.steps.join(',')").asString());
+
+            RuntimeException rejected = assertThrows(RuntimeException.class, () -> engine.executeFunction("failing", null));
+            assertTrue(rejected.getMessage().contains("boom"), rejected.getMessage());
+        }
+    }
+
+    @Test
+    void testOwnerKeepsContextUntilItPauses() throws Exception {
+        TestEngine testEngine = new TestEngine(Collections.emptyList());
+        try (JsEngine engine = new JsEngine(Collections.emptyMap(), new MetricsCollector(), testEngine)) {
+            engine.own();
+            java.util.concurrent.CountDownLatch entered = new java.util.concurrent.CountDownLatch(1);
+            Thread other = Thread.ofVirtual().start(() -> {
+                engine.eval("globalThis.touched = true");
+                entered.countDown();
+            });
+
+            assertFalse(entered.await(100, java.util.concurrent.TimeUnit.MILLISECONDS), "Other threads wait for the owner");
+            engine.sleep(0.2);
+            assertTrue(entered.await(5, java.util.concurrent.TimeUnit.SECONDS), "A sleeping owner lets others in");
+            other.join();
+            assertTrue(engine.eval("globalThis.touched").asBoolean());
+            engine.disown();
+        }
+    }
 }
@@ -51,6 +51,33 @@ class ScenarioParserTest {
         assertEquals(Duration.ofMinutes(1), config.duration());
     }
 
+    @Test
+    void testParseRampingArrivalRate() {
+        Map<String, Object> scenarioMap = Map.of(
+            "executor", "ramping-arrival-rate",
+            "startRate", 10,
+            "timeUnit", "1s",
+            "preAllocatedVUs", 5,
+            "maxVUs", 20,
+            "stages", List.of(
+                Map.of("duration", "30s", "target", 100),
+                Map.of("duration", "1m", "target", 100)
+            )
+        );
+
+        Scenario scenario = ScenarioParser.parse(Map.of("ramp_rps", scenarioMap)).get("ramp_rps");
+
+        assertTrue(scenario.executor() instanceof RampingArrivalRateConfig);
+        RampingArrivalRateConfig config = (RampingArrivalRateConfig) scenario.executor();
+        assertEquals(10.0, config.startRate());
+        assertEquals(Duration.ofSeconds(1), config.timeUnit());
+        assertEquals(2, config.stages().size());
+        assertEquals(100.0, config.stages().get(0).target());
+        assertEquals(Duration.ofMinutes(1), config.stages().get(1).duration());
+        assertEquals(5, config.requiredVus());
+        assertEquals(20, config.vuCapacity());
+    }
+
     @Test
     void testParseMultipleScenarios() {
         Map<String, Object> scenariosMap = Map.of(
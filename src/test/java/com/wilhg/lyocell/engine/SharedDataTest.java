@@ -0,0 +1,49 @@
+package com.wilhg.lyocell.engine;
+
+import com.wilhg.lyocell.metrics.MetricsCollector;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SharedDataTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testOneTreeIsReadByEveryContext() throws Exception {
+        Object data = SharedData.fromJson("""
+                {"token": "abc", "limit": 3000000000, "ratio": 0.5, "users": [{"name": "ann"}, {"name": "bob"}], "none": null}
+                """);
+        Path script = tempDir.resolve("shared_data.js");
+        Files.writeString(script, """
+            export default function(data) {
+                let mutated = true;
+                try {
+                    data.users.push({ name: 'eve' });
+                } catch (e) {
+                    mutated = false;
+                }
+                globalThis.result = [data.token, data.limit, data.ratio, data.none,
+                    data.users.map((u) => u.name).join('+'), Object.keys(data).length, mutated].join(',');
+            }
+            """);
+
+        TestEngine testEngine = new TestEngine(Collections.emptyList());
+        try (JsEngine first = new JsEngine(Collections.emptyMap(), new MetricsCollector(), testEngine);
+             JsEngine second = new JsEngine(Collections.emptyMap(), new MetricsCollector(), testEngine)) {
+            for (JsEngine engine : new JsEngine[]{first, second}) {
+                engine.runScript(script);
+                engine.executeDefault(data);
+                assertEquals("abc,3000000000,0.5,,ann+bob,5,false", engine.eval("globalThis.result").asString());
+            }
+        }
+        assertNull(SharedData.fromJson(null));
+        assertEquals("plain", SharedData.fromJson("\"plain\""));
+    }
+}
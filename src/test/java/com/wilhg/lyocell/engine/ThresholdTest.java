@@ -41,4 +41,97 @@ class ThresholdTest {
         
         assertTrue(exception.getMessage().contains("Thresholds failed"), "Should throw on threshold failure");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testTrendAndTaggedThresholds() throws Exception {
+        Path script = tempDir.resolve("threshold_trend.js");
+        Files.writeString(script, """
+            import { Trend } from 'lyocell/metrics';
+            const t = new Trend('latency');
+            export const options = {
+                thresholds: {
+                    'latency': ['p(95)<1000', 'min>=10'],
+                    'latency{endpoint:slow}': ['avg<100'],
+                },
+            };
+            export default function() {
+                t.add(10, { endpoint: 'fast' });
+                t.add(500, { endpoint: 'slow' });
+            }
+            """);
+
+        TestEngine testEngine = new TestEngine(Collections.emptyList());
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> {
+            testEngine.run(script, new TestConfig(1, 1, null));
+        });
+
+        assertTrue(exception.getMessage().contains("latency{endpoint:slow}: avg<100"), exception.getMessage());
+        assertFalse(exception.getMessage().contains("p(95)<1000"), exception.getMessage());
+    }
+
+    @Test
+    void testAbortOnFailStopsRunEarly() throws Exception {
+        Path script = tempDir.resolve("threshold_abort.js");
+        Files.writeString(script, """
+            import { check, sleep } from 'lyocell';
+            export const options = {
+                scenarios: {
+                    steady: { executor: 'constant-vus', vus: 1, duration: '30s' },
+                },
+                thresholds: {
+                    'checks': [{ threshold: 'rate>0.9', abortOnFail: true }],
+                },
+            };
+            export default function() {
+                check(false, { 'always fails': (v) => v });
+                sleep(0.1);
+            }
+            """);
+
+        TestEngine testEngine = new TestEngine(Collections.emptyList());
+        long start = System.currentTimeMillis();
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> {
+            testEngine.run(script, new TestConfig(1, 1, null));
+        });
+
+        assertTrue(exception.getMessage().contains("Thresholds failed"));
+        assertTrue(testEngine.isAborted());
+        assertTrue(System.currentTimeMillis() - start < 15_000, "abortOnFail should stop the 30s scenario early");
+    }
+
+    @Test
+    void testInvalidThresholdDoesNotStopOthers() throws Exception {
+        Path script = tempDir.resolve("threshold_invalid.js");
+        Files.writeString(script, """
+            import { check, sleep } from 'lyocell';
+            import { Trend } from 'lyocell/metrics';
+            const t = new Trend('latency');
+            export const options = {
+                scenarios: {
+                    steady: { executor: 'constant-vus', vus: 1, duration: '30s' },
+                },
+                thresholds: {
+                    'latency': ['rate<0.1'],
+                    'checks': [{ threshold: 'rate>0.9', abortOnFail: true }],
+                },
+            };
+            export default function() {
+                t.add(10);
+                check(false, { 'always fails': (v) => v });
+                sleep(0.1);
+            }
+            """);
+
+        TestEngine testEngine = new TestEngine(Collections.emptyList());
+        long start = System.currentTimeMillis();
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> {
+            testEngine.run(script, new TestConfig(1, 1, null));
+        });
+
+        // The trend threshold is reported with its error, and the one after it still aborted the run
+        assertTrue(exception.getMessage().contains("latency: rate<0.1 (Unknown trend stat: rate)"), exception.getMessage());
+        assertTrue(exception.getMessage().contains("checks: rate>0.9"), exception.getMessage());
+        assertTrue(testEngine.isAborted());
+        assertTrue(System.currentTimeMillis() - start < 15_000, "abortOnFail should stop the 30s scenario early");
+    }
+}
@@ -0,0 +1,53 @@
+package com.wilhg.lyocell.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimerWheelTest {
+
+    @Test
+    void testTimersFireInDeadlineOrderAcrossRounds() throws Exception {
+        // 8 one-millisecond buckets, so the later timers need several rounds
+        TimerWheel wheel = new TimerWheel(TimeUnit.MILLISECONDS.toNanos(1), 8);
+        List<Integer> fired = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        long start = System.nanoTime();
+
+        for (int delay : new int[]{40, 5, 20}) {
+            wheel.schedule(delay, () -> {
+                assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(delay), "Fired early");
+                fired.add(delay);
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(5, 20, 40), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testCancelledTimersDoNotFire() throws Exception {
+        TimerWheel wheel = new TimerWheel(TimeUnit.MILLISECONDS.toNanos(1), 8);
+        CountDownLatch kept = new CountDownLatch(1);
+        List<String> fired = new CopyOnWriteArrayList<>();
+
+        TimerWheel.Timeout cancelled = wheel.schedule(10, () -> fired.add("cancelled"));
+        wheel.schedule(30, () -> {
+            fired.add("kept");
+            kept.countDown();
+        });
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel(), "A timer is only cancelled once");
+
+        assertTrue(kept.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("kept"), fired);
+        assertEquals(0, wheel.size());
+    }
+}
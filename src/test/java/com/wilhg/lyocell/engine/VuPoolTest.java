@@ -0,0 +1,87 @@
+package com.wilhg.lyocell.engine;
+
+import com.wilhg.lyocell.metrics.MetricsCollector;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VuPoolTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testPreAllocatedVusAreReused() throws Exception {
+        Path script = tempDir.resolve("pool.js");
+        Files.writeString(script, "export default function() {}");
+
+        MetricsCollector collector = new MetricsCollector();
+        TestEngine testEngine = new TestEngine(Collections.emptyList());
+        try (VuPool pool = new VuPool(script, Collections.emptyMap(), null, collector, testEngine, 2)) {
+            pool.preAllocate(2);
+            assertEquals(2, pool.size());
+
+            VirtualUser first = pool.acquire();
+            VirtualUser second = pool.acquire();
+            assertNotSame(first, second);
+            assertNull(pool.tryAcquire(), "Pool should not grow beyond its capacity");
+
+            pool.release(first);
+            assertSame(first, pool.acquire(), "Released VU should be lent out again");
+            assertEquals(2, pool.size());
+        }
+    }
+
+    @Test
+    void testPoolGrowsOnDemandUpToCapacity() throws Exception {
+        Path script = tempDir.resolve("grow.js");
+        Files.writeString(script, "export default function() {}");
+
+        TestEngine testEngine = new TestEngine(Collections.emptyList());
+        try (VuPool pool = new VuPool(script, Collections.emptyMap(), null, new MetricsCollector(), testEngine, 3)) {
+            pool.preAllocate(1);
+            pool.acquire();
+            pool.acquire();
+            pool.acquire();
+            assertEquals(3, pool.size());
+            assertNull(pool.tryAcquire());
+        }
+    }
+
+    @Test
+    void testReservedVusAreCreatedLater() throws Exception {
+        Path script = tempDir.resolve("reserve.js");
+        Files.writeString(script, "export default function() {}");
+
+        TestEngine testEngine = new TestEngine(Collections.emptyList());
+        try (VuPool pool = new VuPool(script, Collections.emptyMap(), null, new MetricsCollector(), testEngine, 2)) {
+            assertNull(pool.tryAcquireIdle(), "Nothing is idle before a VU was built");
+            int first = pool.reserve();
+            int second = pool.reserve();
+            assertEquals(-1, pool.reserve(), "Reservations count against the capacity");
+            assertNotEquals(first, second);
+
+            VirtualUser vu = pool.createReserved(first);
+            pool.release(vu);
+            assertSame(vu, pool.tryAcquireIdle());
+        }
+    }
+
+    @Test
+    void testFailedReservationGivesTheSlotBack() throws Exception {
+        Path script = tempDir.resolve("broken.js");
+        Files.writeString(script, "throw new Error('init failed');");
+
+        TestEngine testEngine = new TestEngine(Collections.emptyList());
+        try (VuPool pool = new VuPool(script, Collections.emptyMap(), null, new MetricsCollector(), testEngine, 1)) {
+            int id = pool.reserve();
+            assertThrows(RuntimeException.class, () -> pool.createReserved(id));
+            assertEquals(0, pool.size());
+            assertEquals(1, pool.reserve());
+        }
+    }
+}
@@ -16,12 +16,16 @@ class WorkloadExecutorTest {
     @Test
     void testCustomExecutor() throws Exception {
         AtomicBoolean executed = new AtomicBoolean(false);
-        WorkloadExecutor mockExecutor = (scenario, scriptPath, extraBindings, setupDataJson, metricsCollector, testEngine) -> {
+        WorkloadExecutor mockExecutor = (scenario, vuPool, metricsCollector, testEngine) -> {
             executed.set(true);
         };
 
         Scenario dummyScenario = new Scenario("test", new com.wilhg.lyocell.engine.scenario.PerVuIterationsConfig(1, 1, java.time.Duration.ZERO, java.time.Duration.ZERO));
-        mockExecutor.execute(dummyScenario, Paths.get("test.js"), Collections.emptyMap(), null, new MetricsCollector(), new TestEngine(Collections.emptyList()));
+        MetricsCollector collector = new MetricsCollector();
+        TestEngine testEngine = new TestEngine(Collections.emptyList());
+        try (VuPool vuPool = new VuPool(Paths.get("test.js"), Collections.emptyMap(), null, collector, testEngine, 1)) {
+            mockExecutor.execute(dummyScenario, vuPool, collector, testEngine);
+        }
         
         assertTrue(executed.get(), "Executor should have been called");
     }
@@ -0,0 +1,66 @@
+package com.wilhg.lyocell.engine.executor;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RampingArrivalRateExecutorTest {
+
+    /** Arrivals by {@code t} for a rate ramping linearly from {@code from} to {@code to} over {@code duration}. */
+    private static double arrivalsAt(double t, double from, double to, double duration) {
+        return from * t + (to - from) * t * t / (2 * duration);
+    }
+
+    /**
+     * Checks every arrival of a stage against the closed form and returns how many start within it,
+     * counting like the executor: from arrival 0 if the stage starts with a rate, else from arrival 1.
+     */
+    private static int assertStage(double from, double to, double duration) {
+        double total = (from + to) / 2 * duration;
+        int started = 0;
+        double previous = -1;
+        for (long k = from > 0 ? 0 : 1; k < total; k++) {
+            double offset = RampingArrivalRateExecutor.offsetInStage(k, from, to, duration);
+            assertTrue(offset >= 0 && offset < duration, "Arrival " + k + " outside the stage: " + offset);
+            assertTrue(offset > previous, "Arrival " + k + " not after the one before");
+            assertEquals(k, arrivalsAt(offset, from, to, duration), 1e-9 * Math.max(1, k), "Arrival " + k);
+            previous = offset;
+            started++;
+        }
+        assertEquals(duration, RampingArrivalRateExecutor.offsetInStage(total, from, to, duration), 1e-9 * duration);
+        return started;
+    }
+
+    @Test
+    void testRampUp() {
+        // 10/s to 50/s over 10s: 300 arrivals, denser towards the end
+        assertEquals(300, assertStage(10, 50, 10));
+        assertTrue(RampingArrivalRateExecutor.offsetInStage(150, 10, 50, 10) > 5);
+    }
+
+    @Test
+    void testRampDown() {
+        // 50/s to 10/s over 10s: 300 arrivals, denser towards the start
+        assertEquals(300, assertStage(50, 10, 10));
+        assertTrue(RampingArrivalRateExecutor.offsetInStage(150, 50, 10, 10) < 5);
+        // Ramping down to zero ends on a zero discriminant
+        assertEquals(250, assertStage(50, 0, 10));
+    }
+
+    @Test
+    void testFlatStage() {
+        assertEquals(100, assertStage(20, 20, 5));
+        assertEquals(2.5, RampingArrivalRateExecutor.offsetInStage(50, 20, 20, 5), 1e-12);
+        // A slope too small to matter must not lose precision to cancellation
+        assertEquals(100, assertStage(20, 20 - 1e-12, 5));
+        assertEquals(2.5, RampingArrivalRateExecutor.offsetInStage(50, 20, 20 - 1e-12, 5), 1e-9);
+    }
+
+    @Test
+    void testRampFromZero() {
+        // 0/s to 100/s over 10s: 500 arrivals at sqrt(2k / slope), the first one after the start
+        assertEquals(499, assertStage(0, 100, 10));
+        assertEquals(0, RampingArrivalRateExecutor.offsetInStage(0, 0, 100, 10));
+        assertEquals(Math.sqrt(2.0 / 10), RampingArrivalRateExecutor.offsetInStage(1, 0, 100, 10), 1e-12);
+    }
+}
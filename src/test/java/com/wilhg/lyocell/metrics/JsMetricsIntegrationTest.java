@@ -39,4 +39,34 @@ class JsMetricsIntegrationTest {
         assertEquals(5, collector.getCounterValue("js_counter"));
         assertEquals(100, collector.getTrendSummary("js_trend").avg());
     }
+
+    @Test
+    void testJsRateAndTaggedTrend() throws Exception {
+        Path script = tempDir.resolve("rate_test.js");
+        Files.writeString(script, """
+            import { Rate, Trend } from 'lyocell/metrics';
+            const r = new Rate('js_rate');
+            const t = new Trend('js_tagged');
+            export default function() {
+                r.add(true);
+                r.add(false);
+                t.add(10, { endpoint: 'a' });
+                t.add(30, { endpoint: 'b' });
+            }
+            """);
+
+        TestEngine testEngine = new TestEngine(Collections.emptyList());
+        testEngine.run(script, new TestConfig(2, 1, null));
+
+        MetricsCollector collector = testEngine.getMetricsCollector();
+        RateMetric rate = collector.getRate("js_rate");
+        assertEquals(4, rate.total());
+        assertEquals(0.5, rate.rate());
+
+        MetricSummary summary = collector.getTrendSummary("js_tagged");
+        assertEquals(4, summary.count());
+        assertEquals(10, summary.min());
+        assertEquals(30, summary.max());
+        assertEquals(2, collector.trend("js_tagged", Map.of("endpoint", "a")).count());
+    }
 }
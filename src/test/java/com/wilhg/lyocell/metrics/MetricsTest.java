@@ -1,12 +1,32 @@
 package com.wilhg.lyocell.metrics;
 
 import org.junit.jupiter.api.Test;
+
+import com.wilhg.lyocell.engine.ExecutionContext;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.StructuredTaskScope;
 import java.util.concurrent.StructuredTaskScope.Joiner;
 import static org.junit.jupiter.api.Assertions.*;
 
 class MetricsTest {
 
+    @Test
+    void testInvalidSummaryTrendStatsAreRejected() {
+        MetricsCollector collector = new MetricsCollector();
+        for (String stat : List.of("p95", "p(abc)", "p(101)", "mean")) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                    () -> collector.configureTrends(List.of("avg", stat), MetricsCollector.DEFAULT_TREND_PRECISION));
+            assertTrue(e.getMessage().contains("summaryTrendStats") && e.getMessage().contains(stat), e.getMessage());
+        }
+        assertEquals(MetricsCollector.DEFAULT_TREND_STATS, collector.getSummaryTrendStats(), "A rejected list must not be applied");
+
+        collector.configureTrends(List.of("med", "p(99.9)", "count"), MetricsCollector.DEFAULT_TREND_PRECISION);
+        assertEquals(List.of("med", "p(99.9)", "count"), collector.getSummaryTrendStats());
+    }
+
     @Test
     void testCounterAggregation() throws Exception {
         MetricsCollector collector = new MetricsCollector();
@@ -38,16 +58,201 @@ class MetricsTest {
         collector.addTrend(metricName, 300);
 
         MetricSummary summary = collector.getTrendSummary(metricName);
-        // Micrometer's DistributionSummary doesn't track min by default.
-        // assertEquals(100, summary.min()); 
+        assertEquals(100, summary.min());
         assertEquals(300, summary.max());
         assertEquals(200, summary.avg());
         
-        // Check percentiles (approximate as Micrometer uses histograms)
+        // Check percentiles (approximate as trends are kept in histograms)
         assertTrue(summary.p95() >= 200 && summary.p95() <= 300);
         assertTrue(summary.p99() >= 200 && summary.p99() <= 300);
     }
 
+    @Test
+    void testTrendPercentiles() {
+        MetricsCollector collector = new MetricsCollector();
+        String metricName = "latency";
+
+        for (int i = 1; i <= 1000; i++) {
+            collector.addTrend(metricName, i * 0.5);
+        }
+
+        TrendHistogram trend = collector.trend(metricName);
+        assertEquals(0.5, trend.stat("min"));
+        assertEquals(500, trend.stat("max"));
+        assertEquals(250, trend.stat("med"), 0.5);
+        assertEquals(450, trend.stat("p(90)"), 0.5);
+        assertEquals(499.5, trend.stat("p(99.9)"), 0.5);
+        assertEquals(1000, trend.stat("count"));
+        assertThrows(IllegalArgumentException.class, () -> trend.stat("p95"));
+    }
+
+    @Test
+    void testHandlesAreCachedPerTagSet() {
+        MetricsCollector collector = new MetricsCollector();
+
+        assertSame(collector.counter("reqs", Map.of("method", "GET")), collector.counter("reqs", Map.of("method", "GET")));
+        assertNotSame(collector.counter("reqs", Map.of("method", "GET")), collector.counter("reqs", Map.of("method", "POST")));
+        assertSame(collector.trend("latency"), collector.trend("latency", Map.of()));
+
+        collector.counter("reqs", Map.of("method", "GET")).increment();
+        collector.counter("reqs", Map.of("method", "POST")).increment(2);
+        assertEquals(3, collector.getCounterValue("reqs"));
+    }
+
+    @Test
+    void testTagSetsAreOrderIndependent() {
+        TagSet tags = TagSet.of(Map.of("method", "GET", "name", "home"));
+
+        assertEquals(tags, TagSet.EMPTY.with("name", "home").with("method", "GET"));
+        assertEquals(tags.hashCode(), TagSet.EMPTY.with("name", "home").with("method", "GET").hashCode());
+        assertEquals("POST", tags.with("method", "POST").get("method"));
+        assertEquals("GET", tags.get("method"));
+        assertTrue(tags.containsAll(Map.of("name", "home")));
+        assertFalse(tags.containsAll(Map.of("name", "other")));
+    }
+
+    @Test
+    void testSeriesBeyondCardinalityCapShareOverflow() {
+        MetricsCollector collector = new MetricsCollector();
+        collector.configureCardinality(2);
+
+        CounterMetric first = collector.counter("reqs", Map.of("url", "/1"));
+        collector.counter("reqs", Map.of("url", "/2"));
+        CounterMetric overflow = collector.counter("reqs", Map.of("url", "/3"));
+
+        assertSame(overflow, collector.counter("reqs", Map.of("url", "/4")));
+        assertSame(overflow, collector.counter("reqs", TagSet.OVERFLOW));
+        assertSame(first, collector.counter("reqs", Map.of("url", "/1")));
+        assertNotSame(overflow, collector.counter("other", Map.of("url", "/3")));
+
+        overflow.increment();
+        first.increment();
+        assertEquals(2, collector.getCounterValue("reqs"));
+    }
+
+    @Test
+    void testConcurrentResolveTakesOneSlotPerTagSet() throws Exception {
+        MetricsCollector collector = new MetricsCollector();
+        collector.configureCardinality(5);
+
+        // Every tag set is resolved by many threads at once; each must still count once towards the cap
+        try (var scope = StructuredTaskScope.open(Joiner.awaitAllSuccessfulOrThrow())) {
+            for (int i = 0; i < 16; i++) {
+                scope.fork(() -> {
+                    for (int id = 0; id < 10; id++) {
+                        collector.counter("reqs", Map.of("id", String.valueOf(id))).increment();
+                    }
+                    return null;
+                });
+            }
+            scope.join();
+        }
+
+        assertEquals(5, collector.seriesCount("reqs"));
+        assertEquals(5, collector.getCounterValuesByTag("reqs", "id").size());
+        assertEquals(160, collector.getCounterValue("reqs"));
+    }
+
+    @Test
+    void testTimeSeriesMergesTagSetsPerInterval() {
+        MetricsCollector collector = new MetricsCollector();
+        collector.configureTimeSeries(Duration.ofHours(1));
+        collector.configureTimeSeriesByTags(List.of("latency"));
+
+        collector.trend("latency", Map.of("name", "a")).record(10);
+        collector.trend("latency", Map.of("name", "b")).record(30);
+        collector.counter("reqs").increment(3);
+
+        List<MetricTimeSeries.IntervalData> latency = collector.getTimeSeries("latency");
+        assertEquals(1, latency.size());
+        assertEquals(2, latency.getFirst().count());
+        assertEquals(20, latency.getFirst().avg());
+        assertEquals(30, latency.getFirst().max());
+        assertEquals(30, latency.getFirst().percentile(95), 0.5);
+        assertEquals(1, collector.getTimeSeries("latency", Map.of("name", "a")).getFirst().count());
+
+        assertEquals(3, collector.getTimeSeries("reqs").getFirst().sum());
+        assertTrue(collector.getTimeSeries("missing").isEmpty());
+    }
+
+    @Test
+    void testTaggedSeriesShareTheMetricTimeSeries() {
+        MetricsCollector collector = new MetricsCollector();
+        collector.configureTimeSeries(Duration.ofHours(1));
+
+        for (int i = 0; i < 100; i++) {
+            collector.trend("latency", Map.of("name", "/" + i)).record(i);
+        }
+
+        // Without opting in, the tag sets only feed the metric's series
+        assertEquals(100, collector.getTimeSeries("latency").getFirst().count());
+        assertTrue(collector.getTimeSeries("latency", Map.of("name", "/1")).isEmpty());
+    }
+
+    @Test
+    void testBufferedSamplesAreMergedOnFlush() {
+        MetricsCollector collector = new MetricsCollector();
+        collector.configureBuffering(Duration.ofHours(1));
+        MetricsBuffer buffer = collector.newBuffer();
+
+        ScopedValue.where(ExecutionContext.CURRENT, new ExecutionContext(1, 0, ExecutionContext.DEFAULT_SCENARIO, buffer)).run(() -> {
+            collector.counter("reqs").increment(2);
+            collector.trend("latency").record(10);
+            collector.trend("latency").record(30);
+            collector.rate("ok").add(true);
+            collector.rate("ok").add(false);
+            collector.recordTimelineEvent(true);
+        });
+        buffer.flush();
+        buffer.flush();
+
+        assertEquals(2, collector.getCounterValue("reqs"));
+        assertEquals(2, collector.getTrend("latency").count());
+        assertEquals(20, collector.getTrend("latency").avg());
+        assertEquals(30, collector.getTrend("latency").max());
+        assertEquals(0.5, collector.getRate("ok").rate());
+        assertEquals(2, collector.getTimeSeries("latency").stream().mapToLong(MetricTimeSeries.IntervalData::count).sum());
+        assertEquals(1, collector.getIterationTimeline(1000).stream().mapToLong(TimeSeriesData::successfulRequests).sum());
+    }
+
+    @Test
+    void testTrendViewFollowsMatchingSeries() {
+        MetricsCollector collector = new MetricsCollector();
+        collector.trend("latency", Map.of("status", "200")).record(10);
+        TrendHistogram view = collector.trendView("latency", Map.of("status", "200"));
+        assertSame(view, collector.trendView("latency", Map.of("status", "200")));
+
+        // Existing, new and buffered series are all merged, other tag sets are not
+        collector.trend("latency", Map.of("status", "200")).record(20);
+        collector.trend("latency", Map.of("status", "200", "method", "GET")).record(30);
+        collector.trend("latency", Map.of("status", "500")).record(1000);
+        collector.configureBuffering(Duration.ofHours(1));
+        MetricsBuffer buffer = collector.newBuffer();
+        ScopedValue.where(ExecutionContext.CURRENT, new ExecutionContext(1, 0, ExecutionContext.DEFAULT_SCENARIO, buffer))
+                .run(() -> collector.trend("latency", Map.of("status", "200")).record(40));
+        buffer.flush();
+
+        assertEquals(4, view.count());
+        assertEquals(40, view.max());
+        assertEquals(collector.getTrend("latency", Map.of("status", "200")).avg(), view.avg());
+    }
+
+    @Test
+    void testDataCountersAreTaggedByScenario() {
+        MetricsCollector collector = new MetricsCollector();
+
+        collector.dataCounters().sent().increment(10);
+        ScopedValue.where(ExecutionContext.CURRENT, new ExecutionContext(1, 0, "checkout", null)).run(() -> {
+            assertSame(collector.dataCounters(), collector.dataCounters());
+            collector.dataCounters().received().increment(100);
+        });
+
+        assertEquals(10, collector.getCounterValue("data_sent"));
+        assertEquals(100, collector.getCounterValue("data_received"));
+        assertEquals(Map.of("checkout", 100.0), collector.getCounterValuesByTag("data_received", "scenario"));
+        assertEquals("1.5 MB", SummaryReporter.formatBytes(1_500_000));
+    }
+
     @Test
     void testGauge() {
         MetricsCollector collector = new MetricsCollector();
@@ -0,0 +1,47 @@
+package com.wilhg.lyocell.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TimelineTest {
+
+    @Test
+    void testEmptyTimeline() {
+        assertTrue(new Timeline().snapshot(1000).isEmpty());
+    }
+
+    @Test
+    void testPerSecondBucketsWithGaps() {
+        Timeline timeline = new Timeline();
+        long start = 1_700_000_000_000L;
+        timeline.record(start + 10, true);
+        timeline.record(start + 900, false);
+        timeline.record(start + 2_500, true);
+
+        List<TimeSeriesData> data = List.copyOf(timeline.snapshot(1000));
+
+        assertEquals(3, data.size());
+        assertEquals(new TimeSeriesData(start, 1, 1), data.get(0));
+        assertEquals(new TimeSeriesData(start + 1000, 0, 0), data.get(1));
+        assertEquals(new TimeSeriesData(start + 2000, 1, 0), data.get(2));
+    }
+
+    @Test
+    void testCoarserBucketsAndChunkGrowth() {
+        Timeline timeline = new Timeline();
+        long start = 1_700_000_000_000L;
+        int seconds = Timeline.CHUNK_SECONDS * 20;
+        for (int i = 0; i < seconds; i++) {
+            timeline.record(start + i * 1000L, i % 2 == 0);
+        }
+
+        List<TimeSeriesData> data = List.copyOf(timeline.snapshot(10_000));
+
+        assertEquals(seconds / 10, data.size());
+        assertEquals(new TimeSeriesData(start, 5, 5), data.getFirst());
+        assertEquals(seconds / 2, data.stream().mapToLong(TimeSeriesData::successfulRequests).sum());
+    }
+}
@@ -0,0 +1,90 @@
+package com.wilhg.lyocell.modules;
+
+import com.wilhg.lyocell.metrics.MetricsCollector;
+import org.junit.jupiter.api.Test;
+
+import java.net.CookieManager;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpConnectionPoolTest {
+    private static final URI HOST_A = URI.create("http://a.example/");
+    private static final URI HOST_B = URI.create("http://b.example/");
+
+    @Test
+    void testScopesDecideWhoSharesClients() throws Exception {
+        MetricsCollector vuCollector = new MetricsCollector();
+        MetricsCollector sharedCollector = new MetricsCollector();
+        try (HttpConnectionPool vuPool = HttpConnectionPool.perVu(vuCollector);
+             HttpConnectionPool sharedPool = new HttpConnectionPool(HttpConnectionPool.Scope.SHARED, true, 0, sharedCollector);
+             var vu1 = vuPool.connections(new CookieManager());
+             var vu2 = vuPool.connections(new CookieManager());
+             var shared1 = sharedPool.connections(new CookieManager());
+             var shared2 = sharedPool.connections(new CookieManager());
+             var vu1First = vu1.acquire(HOST_A, false, true);
+             var vu1Second = vu1.acquire(HOST_B, false, true);
+             var vu2Lease = vu2.acquire(HOST_A, false, true);
+             var shared1Lease = shared1.acquire(HOST_A, false, true);
+             var shared2Lease = shared2.acquire(HOST_A, false, true)) {
+            assertSame(vu1First.client(), vu1Second.client(), "A VU reuses its client across hosts");
+            assertNotSame(vu1First.client(), vu2Lease.client(), "VUs do not share clients");
+            assertSame(shared1Lease.client(), shared2Lease.client(), "Shared scope hands out one client");
+            assertTrue(vu1First.handlesCookies());
+            assertFalse(shared1Lease.handlesCookies(), "Shared clients must not hold one VU's cookies");
+            assertEquals(2, vuCollector.gauge("http_pool_clients").value());
+            assertEquals(1, sharedCollector.gauge("http_pool_clients").value());
+        }
+        assertEquals(0, vuCollector.gauge("http_pool_clients").value());
+        assertEquals(0, sharedCollector.gauge("http_pool_clients").value());
+    }
+
+    @Test
+    void testNoReuseClosesClientAfterEachRequest() throws Exception {
+        MetricsCollector collector = new MetricsCollector();
+        try (HttpConnectionPool pool = new HttpConnectionPool(HttpConnectionPool.Scope.NONE, true, 0, collector);
+             var connections = pool.connections(new CookieManager())) {
+            var first = connections.acquire(HOST_A, false, true);
+            var second = connections.acquire(HOST_A, false, true);
+            assertNotSame(first.client(), second.client());
+            assertEquals(2, collector.gauge("http_pool_clients").value());
+            first.close();
+            second.close();
+            assertEquals(0, collector.gauge("http_pool_clients").value());
+        }
+    }
+
+    @Test
+    void testRequestsWaitForAFreeSlotOnTheirHost() throws Exception {
+        MetricsCollector collector = new MetricsCollector();
+        try (HttpConnectionPool pool = new HttpConnectionPool(HttpConnectionPool.Scope.SHARED, true, 1, collector);
+             var vu1 = pool.connections(new CookieManager());
+             var vu2 = pool.connections(new CookieManager())) {
+            var held = vu1.acquire(HOST_A, false, true);
+            // Other hosts are not affected by the cap on HOST_A
+            vu2.acquire(HOST_B, false, true).close();
+
+            CompletableFuture<Void> waiter = new CompletableFuture<>();
+            Thread.ofVirtual().start(() -> {
+                try (var lease = vu2.acquire(HOST_A, false, true)) {
+                    waiter.complete(null);
+                } catch (Exception e) {
+                    waiter.completeExceptionally(e);
+                }
+            });
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (collector.gauge("http_pool_waiting").value() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, collector.gauge("http_pool_waiting").value(), "Second request should wait for the slot");
+            assertFalse(waiter.isDone());
+
+            held.close();
+            waiter.get(5, TimeUnit.SECONDS);
+            assertEquals(0, collector.gauge("http_pool_active").value());
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.wilhg.lyocell.engine.OutputConfig;
 import com.wilhg.lyocell.engine.TestConfig;
 import com.wilhg.lyocell.engine.TestEngine;
 import com.wilhg.lyocell.engine.JsEngine;
+import com.wilhg.lyocell.metrics.HttpTimings;
 import com.wilhg.lyocell.metrics.MetricsCollector;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
@@ -16,9 +17,13 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import org.testcontainers.utility.DockerImageName;
 import java.io.IOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 import java.util.Map;
 import java.util.Collections;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -159,6 +164,180 @@ class HttpResponseTest {
         assertTrue(duration.get() >= 0, "Duration should be non-negative");
     }
 
+    @Test
+    void testHttpPhaseTimingsAreRecorded() throws Exception {
+        String url = "http://" + httpbun.getHost() + ":" + httpbun.getMappedPort(80) + "/delay/1";
+
+        Path script = tempDir.resolve("http_phases_test.js");
+        Files.writeString(script, """
+            import http from 'lyocell/http';
+            export default function() {
+                http.get('%s');
+            }
+            """.formatted(url));
+
+        TestEngine testEngine = new TestEngine(Collections.emptyList());
+        MetricsCollector collector = new MetricsCollector();
+
+        try (JsEngine engine = new JsEngine(Map.of(), collector, testEngine)) {
+            engine.runScript(script);
+            engine.executeDefault(null);
+        }
+
+        double phases = 0;
+        for (String name : HttpTimings.PHASE_METRICS) {
+            assertEquals(1, collector.getTrend(name).count(), name);
+            phases += collector.getTrend(name).avg();
+        }
+        double duration = collector.getTrend("http_req_duration").avg();
+        assertTrue(collector.getTrend("http_req_waiting").avg() >= 900, "Server delay should be counted as waiting");
+        assertEquals(duration, phases, 1.0, "Phases should add up to the request duration");
+        assertTrue(collector.getCounterValue("data_sent") > 0, "Request head should be counted");
+        assertTrue(collector.getCounterValue("data_received") > 0, "Response head and body should be counted");
+    }
+
+    @Test
+    void testAsyncRequestsOverlap() throws Exception {
+        String url = "http://" + httpbun.getHost() + ":" + httpbun.getMappedPort(80) + "/delay/1";
+
+        Path script = tempDir.resolve("http_async_test.js");
+        Files.writeString(script, """
+            import http from 'lyocell/http';
+            export default async function() {
+                const responses = await Promise.all([1, 2, 3].map(() => http.asyncRequest('GET', '%s')));
+                const failed = await http.asyncRequest('GET', 'http://127.0.0.1:1/');
+                globalThis.AsyncResult.set(responses.map((r) => r.status).join(',') + ':' + failed.status);
+            }
+            """.formatted(url));
+
+        AtomicReference<String> result = new AtomicReference<>();
+        TestEngine testEngine = new TestEngine(Collections.emptyList());
+        MetricsCollector collector = new MetricsCollector();
+
+        try (JsEngine engine = new JsEngine(Map.of("AsyncResult", new TestResultBridge(result)), collector, testEngine)) {
+            engine.runScript(script);
+            long start = System.currentTimeMillis();
+            engine.executeDefault(null);
+            assertTrue(System.currentTimeMillis() - start < 2500, "Requests should be in flight together");
+        }
+
+        assertEquals("200,200,200:0", result.get());
+        assertEquals(4, collector.getCounterValue("http_reqs"));
+        assertEquals(1.0, collector.getCounterValuesByTag("http_reqs", "status").get("0"), "The refused request counts with status 0");
+    }
+
+    @Test
+    void testDiscardedBodiesAreOnlyCounted() throws Exception {
+        String url = "http://" + httpbun.getHost() + ":" + httpbun.getMappedPort(80) + "/bytes/4096";
+
+        Path script = tempDir.resolve("http_discard_test.js");
+        Files.writeString(script, """
+            import http from 'lyocell/http';
+            export default function() {
+                const res = http.get('%s', { responseType: 'none' });
+                globalThis.BodyResult.set(res.status + ':' + (res.body === null));
+            }
+            """.formatted(url));
+
+        AtomicReference<String> result = new AtomicReference<>();
+        TestEngine testEngine = new TestEngine(Collections.emptyList());
+        MetricsCollector collector = new MetricsCollector();
+
+        try (JsEngine engine = new JsEngine(Map.of("BodyResult", new TestResultBridge(result)), collector, testEngine)) {
+            engine.runScript(script);
+            engine.executeDefault(null);
+        }
+
+        assertEquals("200:true", result.get());
+        assertTrue(collector.getCounterValue("data_received") >= 4096, "Discarded body should still be counted");
+    }
+
+    @Test
+    void testPreparedRequestFillsPathVariables() throws Exception {
+        String base = "http://" + httpbun.getHost() + ":" + httpbun.getMappedPort(80);
+
+        Path script = tempDir.resolve("http_prepare_test.js");
+        Files.writeString(script, """
+            import http from 'lyocell/http';
+            const users = http.prepare('post', '%s/anything/users/{id}', { headers: { 'X-Prepared': 'yes' } });
+            export default function() {
+                const first = users.send({ vars: { id: 'a b' }, body: 'one' });
+                const second = users.send({ vars: { id: 42 }, body: 'two' });
+                globalThis.PrepareResult.set([first.json('url').endsWith('/users/a%%20b'), first.json('data'),
+                    second.json('url').endsWith('/users/42'), second.json('headers.X-Prepared')].join(','));
+            }
+            """.formatted(base));
+
+        AtomicReference<String> result = new AtomicReference<>();
+        TestEngine testEngine = new TestEngine(Collections.emptyList());
+        MetricsCollector collector = new MetricsCollector();
+
+        try (JsEngine engine = new JsEngine(Map.of("PrepareResult", new TestResultBridge(result)), collector, testEngine)) {
+            engine.runScript(script);
+            engine.executeDefault(null);
+        }
+
+        assertEquals("true,one,true,yes", result.get());
+        assertEquals(Map.of(base + "/anything/users/{id}", 2.0), collector.getCounterValuesByTag("http_reqs", "name"),
+                "Calls should share the template's series");
+    }
+
+    @Test
+    void testRepeatedRequestsKeepTheirTagsPerStatus() throws Exception {
+        String base = "http://" + httpbun.getHost() + ":" + httpbun.getMappedPort(80);
+
+        Path script = tempDir.resolve("http_tags_test.js");
+        Files.writeString(script, """
+            import http from 'lyocell/http';
+            export default function() {
+                for (let i = 0; i < 3; i++) {
+                    http.get('%s/status/200', { tags: { name: 'status', team: 'a' } });
+                    http.get('%s/status/404', { tags: { name: 'status', team: 'a' } });
+                    http.get('%s/status/404');
+                }
+            }
+            """.formatted(base, base, base));
+
+        TestEngine testEngine = new TestEngine(Collections.emptyList());
+        MetricsCollector collector = new MetricsCollector();
+        try (JsEngine engine = new JsEngine(Collections.emptyMap(), collector, testEngine)) {
+            engine.runScript(script);
+            engine.executeDefault(null);
+        }
+
+        // Cached handles must still land in the series of each request's own tags and status
+        assertEquals(Map.of("200", 3.0, "404", 6.0), collector.getCounterValuesByTag("http_reqs", "status"));
+        assertEquals(Map.of("status", 6.0, base + "/status/404", 3.0), collector.getCounterValuesByTag("http_reqs", "name"));
+        assertEquals(Map.of("a", 6.0), collector.getCounterValuesByTag("http_reqs", "team"));
+    }
+
+    @Test
+    void testNettyEngineReusesKeepAliveConnections() throws Exception {
+        URI uri = URI.create("http://" + httpbun.getHost() + ":" + httpbun.getMappedPort(80) + "/post");
+        MetricsCollector collector = new MetricsCollector();
+
+        try (NettyHttpEngine engine = new NettyHttpEngine(1, HttpConnectionPool.Scope.SHARED, 0, collector);
+             HttpEngine.Session session = engine.open(new CookieManager())) {
+            for (int i = 0; i < 3; i++) {
+                HttpEngine.Request request = new HttpEngine.Request("POST", uri,
+                        Map.of("Content-Type", List.of("application/json")), "{\"name\":\"lyocell\"}".getBytes(StandardCharsets.UTF_8),
+                        null, false, true, HttpEngine.ResponseType.TEXT);
+                HttpPhaseProbe probe = new HttpPhaseProbe();
+                HttpEngine.Response response = session.send(request, probe);
+
+                assertEquals(200, response.status());
+                String body = new String(response.body(), response.charset());
+                assertTrue(body.contains("lyocell"), body);
+                assertEquals("HTTP_1_1", response.protocol());
+                HttpTimings timings = probe.timings(response.sslSession());
+                if (i > 0) {
+                    assertEquals(0, timings.connecting(), "Later requests should reuse the connection");
+                }
+            }
+            assertEquals(1, collector.gauge("http_pool_connections").value());
+        }
+    }
+
     public static class TestResultBridge {
         private final AtomicReference<String> ref;
         public TestResultBridge(AtomicReference<String> ref) { this.ref = ref; }
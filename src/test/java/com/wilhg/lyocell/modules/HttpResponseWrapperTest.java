@@ -0,0 +1,65 @@
+package com.wilhg.lyocell.modules;
+
+import com.wilhg.lyocell.metrics.HttpTimings;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Value;
+import org.graalvm.polyglot.proxy.ProxyObject;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpResponseWrapperTest {
+    private static final HttpEngine.Response RESPONSE = new HttpEngine.Response(200, "HTTP_1_1",
+            Map.of("Content-Type", List.of("text/plain; charset=ISO-8859-1"), "Set-Cookie", List.of("a=1", "b=2")),
+            "café".getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.ISO_8859_1,
+            Optional.empty(), URI.create("http://example.com/"));
+    private static final HttpTimings TIMINGS = new HttpTimings(0, 0, 0, 0, 1, 0, 1);
+
+    @Test
+    void testMembersAreResolvedOnRead() {
+        var wrapper = new HttpModule.HttpResponseWrapper(RESPONSE, HttpEngine.ResponseType.TEXT, TIMINGS, null);
+
+        assertEquals(200, wrapper.getMember("status"));
+        assertEquals("café", wrapper.getMember("body"));
+        assertSame(wrapper.getMember("body"), wrapper.getMember("body"), "Decoded body should be kept");
+
+        ProxyObject headers = (ProxyObject) wrapper.getMember("headers");
+        assertEquals("text/plain; charset=ISO-8859-1", headers.getMember("content-type"));
+        assertEquals("a=1,b=2", headers.getMember("set-cookie"));
+        assertNull(headers.getMember("x-missing"));
+        assertThrows(UnsupportedOperationException.class, () -> wrapper.putMember("status", null));
+    }
+
+    @Test
+    void testBinaryBodyIsAViewOverTheResponseBytes() {
+        var wrapper = new HttpModule.HttpResponseWrapper(RESPONSE, HttpEngine.ResponseType.BINARY, TIMINGS, null);
+
+        ByteBuffer body = (ByteBuffer) wrapper.getMember("body");
+        assertSame(RESPONSE.body(), body.array());
+    }
+
+    @Test
+    void testJsonIsParsedOnceAndSelectable() {
+        var json = new HttpEngine.Response(200, "HTTP_1_1", Map.of("Content-Type", List.of("application/json")),
+                "{\"data\": {\"items\": [{\"id\": 7}, {\"id\": 8}]}}".getBytes(StandardCharsets.UTF_8),
+                StandardCharsets.UTF_8, Optional.empty(), URI.create("http://example.com/"));
+        try (Context context = Context.create("js")) {
+            context.getBindings("js").putMember("res", new HttpModule.HttpResponseWrapper(json, HttpEngine.ResponseType.TEXT, TIMINGS, context));
+
+            assertEquals(8, context.eval("js", "res.json('data.items.1.id')").asInt());
+            assertTrue(context.eval("js", "res.json('data.items.5') === undefined").asBoolean());
+            assertTrue(context.eval("js", "res.json('data') === res.json('data')").asBoolean(), "Selections should be kept");
+
+            assertTrue(context.eval("js", "res.json() === res.json()").asBoolean(), "The parsed body should be kept");
+            Value selected = context.eval("js", "res.json('data.items.0')");
+            assertEquals(7, selected.getMember("id").asInt());
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.wilhg.lyocell.modules;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonSelectorTest {
+    private static final String DOCUMENT = """
+            {"skipped": {"deep": [1, 2, {"x": 3}]}, "data": {"items": [{"id": 7}, {"id": 8, "tags": ["a", "b"]}]}}
+            """;
+
+    @Test
+    void testSelectsByKeysAndIndices() throws Exception {
+        byte[] bytes = DOCUMENT.getBytes(StandardCharsets.UTF_8);
+        assertEquals("7", JsonSelector.select(bytes, StandardCharsets.UTF_8, "data.items.0.id"));
+        assertEquals("[\"a\",\"b\"]", JsonSelector.select(bytes, StandardCharsets.UTF_8, "data.items.1.tags"));
+        assertEquals("\"b\"", JsonSelector.select(DOCUMENT, "data.items.1.tags.1"));
+        assertNull(JsonSelector.select(DOCUMENT, "data.items.2"));
+        assertNull(JsonSelector.select(DOCUMENT, "data.items.first"));
+        assertNull(JsonSelector.select(DOCUMENT, "data.missing"));
+    }
+
+    @Test
+    void testStopsReadingOnceThePathIsResolved() throws Exception {
+        // Everything after the selected value is malformed and must never be parsed
+        assertEquals("{\"id\":1}", JsonSelector.select("{\"first\": {\"id\": 1}, \"rest\": [}}}", "first"));
+        assertThrows(IOException.class, () -> JsonSelector.select("{\"first\": {\"id\": 1}, \"rest\": [}}}", "rest"));
+    }
+}